@@ -13,6 +13,7 @@ import edu.ucf.eplex.mazeNavigation.model.Path;
 import edu.ucf.eplex.mazeNavigation.model.Position;
 import edu.ucf.eplex.mazeNavigation.model.Robot;
 import java.util.LinkedList;
+import java.util.List;
 
 /**
  *
@@ -30,30 +31,49 @@ class BreadCrumbTrail extends FitnessStrategy {
 
     @Override
     public int calculateFitness(Path path) {
-        LinkedList<Position> crumbs = new LinkedList<Position>(theMaze.getBreadCrumbs());
+        return accumulate(path);
+    }
 
-        double euclidianDist = path.getLast().distance(theMaze.getGoal());
-        if (euclidianDist <= 5) {
-            return (int) Math.round(getMaxFitnessValue() - euclidianDist);
-        }
+    /**
+     * @return An accumulator that follows the trail as the robot moves: the
+     * next crumb is taken once the robot comes within two radii of it, though
+     * the last crumb (the goal) is only ever approached.
+     */
+    @Override
+    public Accumulator newAccumulator() {
+        return new Accumulator() {
 
-        int fitness = 0;
-        Position prev = theMaze.getStart();
-        Position next = crumbs.removeFirst();
-        for (Position point : path) {
-            if (!crumbs.isEmpty()) {
-                if (next.distance(point) < 2 * Robot.RADIUS) {
+            private final List<Position> crumbs = theMaze.getBreadCrumbs();
+            private double lastX = theMaze.getStart().getX();
+            private double lastY = theMaze.getStart().getY();
+            private int reached = 0;
+            private int fitness = 0;
+
+            @Override
+            public void onStep(double x, double y, double theta) {
+                lastX = x;
+                lastY = y;
+                if (reached + 1 < crumbs.size() && crumbs.get(reached).distance(x, y) < 2 * Robot.RADIUS) {
                     fitness += 30;
-                    prev = next;
-                    next = crumbs.removeFirst();
+                    reached++;
                 }
             }
-        }
-        double dist = path.getLast().distance(next);
-        double len = prev.distance(next);
-        double score = Math.max(1.0 - dist / len, 0.0);
-        fitness += (int) Math.round(30 * score);
-        return fitness;
+
+            @Override
+            public int getFitness() {
+                double euclidianDist = theMaze.getGoal().distance(lastX, lastY);
+                if (euclidianDist <= 5) {
+                    return (int) Math.round(getMaxFitnessValue() - euclidianDist);
+                }
+
+                Position prev = reached == 0 ? theMaze.getStart() : crumbs.get(reached - 1);
+                Position next = crumbs.get(reached);
+                double dist = next.distance(lastX, lastY);
+                double len = prev.distance(next);
+                double score = Math.max(1.0 - dist / len, 0.0);
+                return fitness + (int) Math.round(30 * score);
+            }
+        };
     }
 
     private int calculateFitness_old(Path path) {
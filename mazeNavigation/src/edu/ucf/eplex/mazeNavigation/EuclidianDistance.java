@@ -31,4 +31,26 @@ public class EuclidianDistance extends FitnessStrategy {
         distance = Math.min(Math.max(distance, MIN_FITNESS), MAX_FITNESS);
         return MAX_FITNESS - (int) Math.round(distance);
     }
+
+    @Override
+    public Accumulator newAccumulator() {
+        return new Accumulator() {
+
+            private double lastX = theMaze.getStart().getX();
+            private double lastY = theMaze.getStart().getY();
+
+            @Override
+            public void onStep(double x, double y, double theta) {
+                lastX = x;
+                lastY = y;
+            }
+
+            @Override
+            public int getFitness() {
+                double distance = theMaze.getGoal().distance(lastX, lastY);
+                distance = Math.min(Math.max(distance, MIN_FITNESS), MAX_FITNESS);
+                return MAX_FITNESS - (int) Math.round(distance);
+            }
+        };
+    }
 }
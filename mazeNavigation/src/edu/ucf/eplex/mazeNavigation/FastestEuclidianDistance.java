@@ -35,4 +35,28 @@ public class FastestEuclidianDistance extends FitnessStrategy {
 //        System.out.println("Fitness = " + fitness + ", Distance = " + distance + ", Time = " + path.size());
         return fitness;
     }
+
+    @Override
+    public Accumulator newAccumulator() {
+        return new Accumulator() {
+
+            private double lastX = theMaze.getStart().getX();
+            private double lastY = theMaze.getStart().getY();
+            private int steps = 0;
+
+            @Override
+            public void onStep(double x, double y, double theta) {
+                lastX = x;
+                lastY = y;
+                steps++;
+            }
+
+            @Override
+            public int getFitness() {
+                double distance = theMaze.getGoal().distance(lastX, lastY);
+                distance = Math.min(Math.max(distance, MIN_FITNESS), MAX_FITNESS);
+                return 2 * MAX_FITNESS - (int) Math.round(distance) - steps;
+            }
+        };
+    }
 }
@@ -28,6 +28,56 @@ public abstract class FitnessStrategy {
 
     public abstract int calculateFitness(Path path);
 
+    /**
+     * @return A new accumulator for one trial.  Unless a strategy scores its
+     * trials as they run, the accumulator keeps the path and scores it with
+     * {@link #calculateFitness(Path)} when done.
+     */
+    public Accumulator newAccumulator() {
+        return new Accumulator() {
+
+            private final Path path = new Path();
+
+            @Override
+            public void onStep(double x, double y, double theta) {
+                path.add(x, y, theta);
+            }
+
+            @Override
+            public int getFitness() {
+                return calculateFitness(path);
+            }
+        };
+    }
+
+    /**
+     * Scores a finished path by passing its poses through an accumulator.
+     */
+    protected int accumulate(Path path) {
+        Accumulator fitness = newAccumulator();
+        for (int i = 0; i < path.size(); i++) {
+            fitness.onStep(path.getX(i), path.getY(i), path.getTheta(i));
+        }
+        return fitness.getFitness();
+    }
+
+    /**
+     * Scores one trial a timestep at a time, giving the same fitness as
+     * {@link #calculateFitness(Path)} gives the trial's path.
+     */
+    public interface Accumulator {
+
+        /**
+         * Records the robot's pose after the next timestep.
+         */
+        void onStep(double x, double y, double theta);
+
+        /**
+         * @return The fitness of the trial so far
+         */
+        int getFitness();
+    }
+
     public int getMaxFitnessValue() {
         return MAX_FITNESS;
     }
@@ -12,22 +12,94 @@ import org.jgap.BehaviorVector;
 
 import com.anji.util.Properties;
 
-import edu.ucf.eplex.mazeNavigation.model.Path;
+import edu.ucf.eplex.mazeNavigation.model.Maze;
+import edu.ucf.eplex.mazeNavigation.model.TrajectoryDescriptor;
+import edu.ucf.eplex.naiecFramework.domain.Candidate;
 import edu.ucf.eplex.naiecFramework.domain.DomainNoveltyMetric;
+import edu.ucf.eplex.naiecFramework.novelty.BehaviorIndex;
+import edu.ucf.eplex.naiecFramework.novelty.GridBehaviorIndex;
+
+import java.awt.Dimension;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 /**
  * @author Brian Woolley (brian.woolley at ieee.org)
  *
  */
-public class MazeDomainNoveltyMetric extends DomainNoveltyMetric<Path> {
+public class MazeDomainNoveltyMetric extends DomainNoveltyMetric<TrajectoryDescriptor> {
+
+    private final TrajectoryEncoder trajectoryEncoder;
 
     public MazeDomainNoveltyMetric(Properties props) {
-        super(props);
+        this(props, new TrajectoryEncoder(props));
+    }
+
+    /**
+     * The end point descriptor keeps the dimensionality set by property
+     * <code>novelty.behavior.space.dimensionality</code>; the trajectory
+     * descriptors set their own.
+     */
+    private MazeDomainNoveltyMetric(Properties props, TrajectoryEncoder encoder) {
+        super(props, encoder.isEndPoint()
+                ? props.getIntProperty(BEHAVOR_SPACE_DIMENSIONALITY_KEY, DEFAULT_BEHAVOR_SPACE_DIMENSIONALITY)
+                : encoder.getDimensionality());
+        trajectoryEncoder = encoder;
     }
-    
+
+    /**
+     * @return The encoder that reduces each trajectory to this metric's behaviors.
+     */
+    public TrajectoryEncoder getTrajectoryEncoder() {
+        return trajectoryEncoder;
+    }
+
     @Override
-    public BehaviorVector computeBehaviorVector(Path path) {
-        return new BehaviorVector(path.getLast().toArray());
+    public BehaviorVector computeBehaviorVector(TrajectoryDescriptor descriptor) {
+        return new BehaviorVector(descriptor.toArray());
+    }
+
+    /**
+     * Adds the <code>grid</code> index type, which buckets the (x, y) end point
+     * of each path into a uniform grid over the maze.  Unless set by property
+     * <code>novelty.index.grid.cell.size</code>, the cells are sized so that a
+     * full archive spread evenly over the maze holds about k behaviors per cell.
+     * The grid only suits the end point descriptor; with a trajectory
+     * descriptor the base class chooses the index as for <code>auto</code>.
+     *
+     * @see DomainNoveltyMetric#createBehaviorIndex(Properties)
+     */
+    @Override
+    protected BehaviorIndex<Candidate> createBehaviorIndex(Properties props) {
+        String type = props.getProperty(INDEX_TYPE_KEY, "");
+        if (!type.equalsIgnoreCase("grid")) {
+            return super.createBehaviorIndex(props);
+        }
+        if (!TrajectoryEncoder.isEndPoint(props)) {
+            Logger.getLogger(MazeDomainNoveltyMetric.class.getName()).log(Level.WARNING,
+                    "{0} \"grid\" needs the endpoint behavior descriptor, using auto", INDEX_TYPE_KEY);
+            return super.createBehaviorIndex(props);
+        }
+
+        Dimension size = Maze.getMap(props.getProperty(MazeNavigationDomain.MAZE_TYPE_KEY)).getSize();
+        double cellSize = props.getDoubleProperty(GRID_CELL_SIZE_KEY,
+                getGridCellSize(size, getKnnValue(), getMaxArchiveSize()));
+        double[] lower = {0, 0};
+        double[] upper = {size.getWidth(), size.getHeight()};
+        return new GridBehaviorIndex<Candidate>(getBehaviorSpaceDimensionality() + 1, lower, upper, cellSize);
+    }
+
+    /**
+     * @param mazeSize The bounds of the maze
+     * @param k The number of nearest neighbors in each query
+     * @param archiveSize The maximum number of indexed behaviors
+     * @return The edge length of a cell that holds about k of archiveSize
+     * behaviors spread evenly over the maze.
+     */
+    public static double getGridCellSize(Dimension mazeSize, int k, int archiveSize) {
+        double area = mazeSize.getWidth() * mazeSize.getHeight();
+        return Math.max(Math.sqrt(area * k / Math.max(archiveSize, 1)), 1.0);
     }
 
+    private static final String GRID_CELL_SIZE_KEY = "novelty.index.grid.cell.size";
 }
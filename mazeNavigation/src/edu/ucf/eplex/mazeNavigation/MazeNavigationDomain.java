@@ -11,14 +11,18 @@ package edu.ucf.eplex.mazeNavigation;
 import edu.ucf.eplex.mazeNavigation.behaviorFramework.ANN_Behavior;
 import edu.ucf.eplex.mazeNavigation.behaviorFramework.Behavior;
 import edu.ucf.eplex.mazeNavigation.gui.EvolutionPanel;
+import edu.ucf.eplex.mazeNavigation.model.BatchEnvironment;
 import edu.ucf.eplex.mazeNavigation.model.Environment;
+import edu.ucf.eplex.mazeNavigation.model.EncodedPath;
 import edu.ucf.eplex.mazeNavigation.model.Maze;
 import edu.ucf.eplex.mazeNavigation.model.Path;
 import edu.ucf.eplex.mazeNavigation.model.Position;
+import edu.ucf.eplex.mazeNavigation.model.TrajectoryDescriptor;
 import edu.ucf.eplex.mazeNavigation.util.MazeRenderingTool;
 import edu.ucf.eplex.naiecFramework.NaiecSession;
 import edu.ucf.eplex.naiecFramework.domain.*;
 
+import com.anji.integration.Activator;
 import com.anji.util.Properties;
 
 import java.awt.Color;
@@ -30,6 +34,8 @@ import java.awt.image.BufferedImage;
 import java.awt.image.RenderedImage;
 import java.io.IOException;
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
 import javax.swing.GroupLayout;
 import javax.swing.JCheckBox;
@@ -60,6 +66,10 @@ public class MazeNavigationDomain extends EvaluationDomain<Path> {
 
     private Map<Candidate, BehaviorVector> allPoints;
     private MazeDomainNoveltyMetric noveltyMetric;
+    private TrajectoryEncoder trajectoryEncoder;
+    private Map<Candidate, TrajectoryDescriptor> descriptors;
+    private Map<Candidate, Integer> fitnessValues;
+    private SimulationCache<Trial> simulationCache;
     private MazeRenderingTool render = new MazeRenderingTool();
 
     public MazeNavigationDomain() {
@@ -88,8 +98,8 @@ public class MazeNavigationDomain extends EvaluationDomain<Path> {
 
     private Collection<Position> getArchivePoints() {
         Collection<Position> results = new HashSet<Position>();
-        for (Path path : noveltyMetric.getArchivedBehaviors()) {
-            results.add(path.getLast());
+        for (TrajectoryDescriptor descriptor : noveltyMetric.getArchivedBehaviors()) {
+            results.add(descriptor.getLast());
         }
         return results;
     }
@@ -121,33 +131,245 @@ public class MazeNavigationDomain extends EvaluationDomain<Path> {
     @Override
     public void evaluateFitness(Candidate subject) {
         evaluate(subject);
-        Path path = population.get(subject);
+        Integer fitness = fitnessValues.get(subject);
+        if (fitness == null) {
+            // A result restored without a new simulation; its retained path
+            // may be encoded, so the fitness is taken from its trial
+            fitness = getTrial(subject).fitness;
+            fitnessValues.put(subject, fitness);
+        }
 //        if (subject.isSolution()) {
 //            subject.setFitnessValue(fitnessFunction.getMaxFitnessValue());
 //        } else {
-            subject.setFitnessValue(fitnessFunction.calculateFitness(path));
+            subject.setFitnessValue(fitness);
 //        }
     }
 
     @Override
     public void evaluateFitness(List<Candidate> subjects) {
+        evaluate(subjects);
         for (Candidate subject : subjects) {
             evaluateFitness(subject);
         }
+        dropStaleSummaries();
     }
 
     @Override
     public void evaluateNovelty(List<Candidate> subjects) {
         evaluate(subjects);
         evaluateFitness(subjects);
-        noveltyMetric.score(population);
+        noveltyMetric.score(getPopulationDescriptors());
     }
 
+    /**
+     * Collects the trajectory descriptor of each member of the population, in
+     * population order.  Results restored without a new simulation take
+     * theirs from their trials, as their retained paths may be encoded.
+     */
+    private Map<Candidate, TrajectoryDescriptor> getPopulationDescriptors() {
+        Map<Candidate, TrajectoryDescriptor> results = new LinkedHashMap<Candidate, TrajectoryDescriptor>();
+        for (Map.Entry<Candidate, Path> entry : population.entrySet()) {
+            TrajectoryDescriptor descriptor = descriptors.get(entry.getKey());
+            if (descriptor == null) {
+                descriptor = getTrial(entry.getKey()).descriptor;
+            }
+            results.put(entry.getKey(), descriptor);
+        }
+        descriptors.putAll(results);
+        return results;
+    }
+
+    /**
+     * Drops the fitness values and descriptors of subjects whose results are
+     * no longer kept.
+     */
+    private void dropStaleSummaries() {
+        Set<Candidate> kept = new HashSet<Candidate>(population.keySet());
+        kept.addAll(allUserEvaluatedSubjects.keySet());
+        fitnessValues.keySet().retainAll(kept);
+        descriptors.keySet().retainAll(kept);
+    }
+
+    /**
+     * Simulates the subjects not yet evaluated.  With property
+     * <code>mazeDomain.batchSimulation</code> set (the default) they are
+     * simulated together in a {@link BatchEnvironment}, which gives each the
+     * same path as {@link #evaluate(Candidate)}; otherwise one at a time.
+     * With property <code>mazeDomain.parallelSimulation</code> set the
+     * simulations are shared among a pool of workers; the results are
+     * recorded afterwards, on this thread and in subject order, so they are
+     * the same for any number of workers.
+     */
     @Override
     public void evaluate(List<Candidate> subjects) {
-        for (Candidate subject : subjects) {
-            evaluate(subject);
+        // Subjects whose networks were simulated recently reuse those
+        // results, and subjects with the same network share one simulation
+        List<Candidate> pending = new ArrayList<Candidate>();
+        List<PhenotypeKey> keys = new ArrayList<PhenotypeKey>();
+        Map<PhenotypeKey, Trial> trials = new HashMap<PhenotypeKey, Trial>();
+        for (Candidate subject : new LinkedHashSet<Candidate>(subjects)) {
+            if (!population.containsKey(subject)) {
+                PhenotypeKey key = subject.getPhenotypeKey();
+                pending.add(subject);
+                keys.add(key);
+                if (!trials.containsKey(key)) {
+                    trials.put(key, simulationCache.get(key));
+                }
+            }
+        }
+        if (pending.isEmpty()) {
+            return;
+        }
+
+        List<Candidate> runs = new ArrayList<Candidate>();
+        List<PhenotypeKey> runKeys = new ArrayList<PhenotypeKey>();
+        Set<PhenotypeKey> scheduled = new HashSet<PhenotypeKey>();
+        for (int i = 0; i < pending.size(); i++) {
+            if (trials.get(keys.get(i)) == null && scheduled.add(keys.get(i))) {
+                runs.add(pending.get(i));
+                runKeys.add(keys.get(i));
+            }
+        }
+        if (!runs.isEmpty()) {
+            Trial[] results = simulateAll(runs);
+            for (int i = 0; i < runs.size(); i++) {
+                trials.put(runKeys.get(i), results[i]);
+                simulationCache.put(runKeys.get(i), results[i], results[i].getMemoryUsage(runKeys.get(i)));
+            }
+        }
+
+        for (int i = 0; i < pending.size(); i++) {
+            record(pending.get(i), trials.get(keys.get(i)));
+        }
+    }
+
+    /**
+     * Simulates subjects with distinct networks, on the simulation pool if
+     * simulation is parallel.
+     *
+     * @return The outcome of each subject's trial, in order
+     */
+    private Trial[] simulateAll(List<Candidate> subjects) {
+        Trial[] results = new Trial[subjects.size()];
+        if (parallelSimulation && subjects.size() > getSimulationSplitSize()) {
+            // The pool's invoke returns once every task is done, after which
+            // this thread sees every result the workers stored
+            getSimulationPool().invoke(new SimulationTask(subjects, results, 0, subjects.size()));
+        } else {
+            simulate(subjects, results, 0, subjects.size());
+        }
+        return results;
+    }
+
+    /**
+     * Simulates a range of subjects, storing their outcomes in the same range
+     * of <code>results</code>.  Each trial reads the maze, the fitness
+     * strategy and the trajectory encoder but changes none of them, and
+     * drives only its own subject's network, so ranges of distinct subjects
+     * may be simulated at once.
+     */
+    private void simulate(List<Candidate> subjects, Trial[] results, int from, int to) {
+        if (batchSimulation) {
+            Trial[] trials = simulate(subjects.subList(from, to));
+            System.arraycopy(trials, 0, results, from, trials.length);
+        } else {
+            for (int i = from; i < to; i++) {
+                results[i] = simulate(subjects.get(i));
+            }
+        }
+    }
+
+    /**
+     * @return The most subjects simulated by one task: enough to fill a
+     * batch, or one when each is simulated alone
+     */
+    private int getSimulationSplitSize() {
+        return batchSimulation ? BATCH_SPLIT_SIZE : 1;
+    }
+
+    private synchronized ForkJoinPool getSimulationPool() {
+        if (simulationPool == null) {
+            int threads = simulationThreads > 0 ? simulationThreads : Runtime.getRuntime().availableProcessors();
+            simulationPool = new ForkJoinPool(threads);
+        }
+        return simulationPool;
+    }
+
+    /**
+     * Splits the simulations of a population across the simulation pool.
+     * Trials end early when the goal is found or, in a fragile maze, when a
+     * wall is hit, so their lengths vary widely; idle workers steal the
+     * halves not yet started from busy ones.
+     */
+    private class SimulationTask extends RecursiveAction {
+
+        private final List<Candidate> subjects;
+        private final Trial[] results;
+        private final int from, to;
+
+        SimulationTask(List<Candidate> subjects, Trial[] results, int from, int to) {
+            this.subjects = subjects;
+            this.results = results;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= getSimulationSplitSize()) {
+                simulate(subjects, results, from, to);
+            } else {
+                int mid = (from + to) >>> 1;
+                invokeAll(new SimulationTask(subjects, results, from, mid),
+                        new SimulationTask(subjects, results, mid, to));
+            }
+        }
+
+        private static final long serialVersionUID = 1L;
+    }
+
+    /**
+     * Simulates subjects together in a {@link BatchEnvironment}.
+     *
+     * @return The outcome of each subject's trial, in order
+     */
+    private Trial[] simulate(List<Candidate> subjects) {
+        // Each trial starts from a clean network state, as in ANN_Behavior
+        List<Activator> nets = new ArrayList<Activator>();
+        TrajectoryEncoder.Recorder[] recorders = new TrajectoryEncoder.Recorder[subjects.size()];
+        FitnessStrategy.Accumulator[] scores = new FitnessStrategy.Accumulator[subjects.size()];
+        for (int i = 0; i < subjects.size(); i++) {
+            subjects.get(i).resetANN();
+            nets.add(subjects.get(i).getANN());
+            recorders[i] = trajectoryEncoder.newRecorder();
+            scores[i] = fitnessFunction.newAccumulator();
         }
+        BatchEnvironment env = new BatchEnvironment(getMaze(), nets, retainPaths);
+        boolean[] solved = new boolean[subjects.size()];
+
+        for (int t = 0; t < maxTimesteps && env.getRunningCount() > 0; t++) {
+            env.step();
+            for (int i = 0; i < subjects.size(); i++) {
+                if (!env.isRunning(i)) {
+                    continue;
+                }
+                recorders[i].record(env.getX(i), env.getY(i), env.getTheta(i));
+                scores[i].onStep(env.getX(i), env.getY(i), env.getTheta(i));
+                if (fragileMaze && env.isHitWallEventSet(i)) {
+                    env.stop(i);
+                } else if (env.distToGoal(i) <= goalThreshold) {
+                    solved[i] = true;
+                    env.stop(i);
+                }
+            }
+        }
+
+        Trial[] results = new Trial[subjects.size()];
+        for (int i = 0; i < subjects.size(); i++) {
+            Path path = retainPaths ? retain(env.getPath(i)) : endpoint(env.getPosition(i));
+            results[i] = new Trial(path, scores[i].getFitness(), recorders[i].finish(), solved[i]);
+        }
+        return results;
     }
 
     @Override
@@ -158,13 +380,43 @@ public class MazeNavigationDomain extends EvaluationDomain<Path> {
             return;
         }
 
+        record(subject, getTrial(subject));
+//        evaluateFitness(subject);
+//        observationPoint.notifyObservers(getPopulationPoints(), getArchivePoints());
+    }
+
+    /**
+     * @return The outcome of the subject's trial, from the simulation cache
+     * or from a new simulation; unlike the retained path, its fitness and
+     * descriptor are always those of the full-precision trial
+     */
+    private Trial getTrial(Candidate subject) {
+        PhenotypeKey key = subject.getPhenotypeKey();
+        Trial trial = simulationCache.get(key);
+        if (trial == null) {
+            trial = simulate(subject);
+            simulationCache.put(key, trial, trial.getMemoryUsage(key));
+        }
+        return trial;
+    }
+
+    /**
+     * Simulates one subject in an {@link Environment}.
+     */
+    private Trial simulate(Candidate subject) {
         // Build ANN Behavior from Chrom
         Behavior phenotype = new ANN_Behavior(subject);
         Environment env = new Environment(phenotype, getMaze());
+        TrajectoryEncoder.Recorder recorder = trajectoryEncoder.newRecorder();
+        FitnessStrategy.Accumulator fitness = fitnessFunction.newAccumulator();
+        boolean solved = false;
 
         // Evaluate over x timesteps (or until distToGoal <= 5)
         for (int i = 0; i < maxTimesteps; i++) {
            	env.step();
+           	Position pose = env.getRobot().getPosition();
+           	recorder.record(pose);
+           	fitness.onStep(pose.getX(), pose.getY(), pose.getTheta());
 
        		// IF this is a fragile maze AND a wall has been hit, then the trial is over.
            	if (fragileMaze && env.isHitWallEventSet()) {
@@ -172,18 +424,87 @@ public class MazeNavigationDomain extends EvaluationDomain<Path> {
            	}
 
            	if (env.distToGoal() <= goalThreshold) {
-                System.out.println("<--------------------MAZE SOLVED!  GOAL FOUND BY CHROMOSOME " + subject.getId() + "!-------------------->");
-                subject.setAsSolution(true);
+                solved = true;
 //                for (Position pt : env.getPath()) {
 //                    System.out.println("breadCrumbs.add(new Position(" + Math.round(pt.getX()) + ", " + Math.round(pt.getY()) + ", 0));");
 //                }
                 break;
             }
         }
-        population.put(subject, env.getPath());
-        allPoints.put(subject, new BehaviorVector(env.getPath().getLast().toArray()));
-//        evaluateFitness(subject);
-//        observationPoint.notifyObservers(getPopulationPoints(), getArchivePoints());
+        Path path = retainPaths ? retain(env.getPath()) : endpoint(env.getRobot().getPosition());
+        return new Trial(path, fitness.getFitness(), recorder.finish(), solved);
+    }
+
+    /**
+     * Makes a trial's outcome the subject's result.
+     */
+    private void record(Candidate subject, Trial trial) {
+        if (trial.solved) {
+            System.out.println("<--------------------MAZE SOLVED!  GOAL FOUND BY CHROMOSOME " + subject.getId() + "!-------------------->");
+            subject.setAsSolution(true);
+        }
+        putResult(subject, trial.path);
+        fitnessValues.put(subject, trial.fitness);
+        descriptors.put(subject, trial.descriptor);
+        allPoints.put(subject, new BehaviorVector(trial.path.getLast().toArray()));
+    }
+
+    /**
+     * @return The path as it is kept once its trial is over: encoded, unless
+     * property <code>mazeDomain.pathEncoding.resolution</code> is 0.  Only
+     * playback reads the rounded poses; the final pose is kept exactly, and
+     * fitness and descriptors always come from the trial itself.
+     */
+    private Path retain(Path path) {
+        if (pathResolution > 0 && !path.isEmpty()) {
+            return new EncodedPath(path, pathResolution);
+        }
+        return path;
+    }
+
+    /**
+     * @return A path of the final pose alone, kept in place of the full path
+     * when property <code>mazeDomain.retainPaths</code> is false
+     */
+    private static Path endpoint(Position last) {
+        Path path = new Path(1);
+        path.add(last);
+        return path;
+    }
+
+    /**
+     * @return The cache of recent trials, keyed by the simulated network
+     */
+    public SimulationCache<?> getSimulationCache() {
+        return simulationCache;
+    }
+
+    /**
+     * The outcome of one trial, which is the same for every subject with the
+     * same network.
+     */
+    private static final class Trial {
+
+        final Path path;
+        final int fitness;
+        final TrajectoryDescriptor descriptor;
+        final boolean solved;
+
+        Trial(Path path, int fitness, TrajectoryDescriptor descriptor, boolean solved) {
+            this.path = path;
+            this.fitness = fitness;
+            this.descriptor = descriptor;
+            this.solved = solved;
+        }
+
+        /**
+         * @return An estimate of the bytes held by the trial and its key
+         */
+        long getMemoryUsage(PhenotypeKey key) {
+            long pathBytes = path instanceof EncodedPath
+                    ? ((EncodedPath) path).getEncodedSize() : 24L * path.size();
+            return key.getMemoryUsage() + pathBytes + 4L * descriptor.size() + 192;
+        }
     }
 
     @Override
@@ -206,6 +527,11 @@ public class MazeNavigationDomain extends EvaluationDomain<Path> {
         return noveltyMetric.getArchiveSize();
     }
 
+    @Override
+    public NoveltyMetricStatistics getNoveltyStatistics() {
+        return noveltyMetric.getStatistics();
+    }
+
     @Override
     public Map<Candidate, BehaviorVector> getAllPointsVisited() {
         return allPoints;
@@ -247,26 +573,92 @@ public class MazeNavigationDomain extends EvaluationDomain<Path> {
         }
         mazeType = props.getProperty(MAZE_TYPE_KEY, DEFAULT_MAZE_TYPE);
         fragileMaze = props.getBooleanProperty(FRAGILE_MAZE_KEY, DEFAULT_FRAGILE_MAZE);
+        batchSimulation = props.getBooleanProperty(BATCH_SIMULATION_KEY, DEFAULT_BATCH_SIMULATION);
+        parallelSimulation = props.getBooleanProperty(PARALLEL_SIMULATION_KEY, DEFAULT_PARALLEL_SIMULATION);
+        simulationThreads = props.getIntProperty(SIMULATION_THREADS_KEY, DEFAULT_SIMULATION_THREADS);
+        synchronized (this) {
+            if (simulationPool != null) {
+                simulationPool.shutdown();
+                simulationPool = null;
+            }
+        }
+        pathResolution = props.getDoubleProperty(PATH_RESOLUTION_KEY, EncodedPath.DEFAULT_RESOLUTION);
+        retainPaths = props.getBooleanProperty(RETAIN_PATHS_KEY, DEFAULT_RETAIN_PATHS);
         maxTimesteps = props.getIntProperty(TIMESTEPS_KEY, DEFAULT_TIMESTEPS);
         goalThreshold = props.getIntProperty(GOAL_THRESHOLD_KEY, DEFAULT_GOAL_THRESHOLD);
+        getMaze().setDistanceFieldResolution(
+                props.getDoubleProperty(DISTANCE_FIELD_RESOLUTION_KEY, Maze.DEFAULT_FIELD_RESOLUTION));
 
         fitnessFunction = getFitnessFunction(props.getProperty(FITNESS_APPROACH_KEY, DEFAULT_FITNESS_APPROACH));
         
         viewerEnabled = props.getBooleanProperty(VIEWER_KEY, DEFAULT_VIEWER);
 
         noveltyMetric = new MazeDomainNoveltyMetric(props);
+        trajectoryEncoder = noveltyMetric.getTrajectoryEncoder();
+        descriptors = new HashMap<Candidate, TrajectoryDescriptor>();
+        fitnessValues = new HashMap<Candidate, Integer>();
+        simulationCache = new SimulationCache<Trial>(
+                props.getLongProperty(SIMULATION_CACHE_BUDGET_KEY, DEFAULT_SIMULATION_CACHE_BUDGET));
         population = new HashMap<Candidate, Path>();
         simulations = new HashMap<EvaluationPanel, Path>();
         allPoints = new HashMap<Candidate, BehaviorVector>();
     }
-    private final static String MAZE_TYPE_KEY = "mazeDomain.map";
+    final static String MAZE_TYPE_KEY = "mazeDomain.map";
     private final static String DEFAULT_MAZE_TYPE = "medium.map";
     private String mazeType = DEFAULT_MAZE_TYPE;
 
+    /**
+     * The spacing of the samples in the maze's distance field, which answers
+     * most collision tests without measuring every wall; 0 disables the field.
+     */
+    private final static String DISTANCE_FIELD_RESOLUTION_KEY = "mazeDomain.distanceField.resolution";
+
     private final static String FRAGILE_MAZE_KEY = "mazeDomain.fragileMap";
     private final static boolean DEFAULT_FRAGILE_MAZE = false;
     private boolean fragileMaze = DEFAULT_FRAGILE_MAZE;
 
+    private final static String BATCH_SIMULATION_KEY = "mazeDomain.batchSimulation";
+    private final static boolean DEFAULT_BATCH_SIMULATION = true;
+    private boolean batchSimulation = DEFAULT_BATCH_SIMULATION;
+
+    /**
+     * Whether subjects are simulated on a pool of
+     * <code>mazeDomain.parallelSimulation.threads</code> workers (0 for one
+     * per processor), in batches of up to {@value #BATCH_SPLIT_SIZE} when
+     * batch simulation is on.
+     */
+    private final static String PARALLEL_SIMULATION_KEY = "mazeDomain.parallelSimulation";
+    private final static boolean DEFAULT_PARALLEL_SIMULATION = false;
+    private boolean parallelSimulation = DEFAULT_PARALLEL_SIMULATION;
+    private final static String SIMULATION_THREADS_KEY = "mazeDomain.parallelSimulation.threads";
+    private final static int DEFAULT_SIMULATION_THREADS = 0;
+    private int simulationThreads = DEFAULT_SIMULATION_THREADS;
+    private final static int BATCH_SPLIT_SIZE = 16;
+    private ForkJoinPool simulationPool = null;
+
+    /**
+     * The spacing of the fixed-point grid on which retained paths are kept
+     * (see {@link EncodedPath}); 0 keeps them at full precision.
+     */
+    private final static String PATH_RESOLUTION_KEY = "mazeDomain.pathEncoding.resolution";
+    private double pathResolution = EncodedPath.DEFAULT_RESOLUTION;
+
+    /**
+     * Whether each subject's full path is kept after its trial.  Fitness and
+     * behavior are accumulated while the trial runs, so headless runs can
+     * keep the final pose alone; playback then shows only that pose.
+     */
+    private final static String RETAIN_PATHS_KEY = "mazeDomain.retainPaths";
+    private final static boolean DEFAULT_RETAIN_PATHS = true;
+    private boolean retainPaths = DEFAULT_RETAIN_PATHS;
+
+    /**
+     * The most bytes of trial results kept for reuse by subjects with the
+     * same network; 0 simulates every subject.
+     */
+    private final static String SIMULATION_CACHE_BUDGET_KEY = "mazeDomain.simulationCache.budget";
+    private final static long DEFAULT_SIMULATION_CACHE_BUDGET = 16 * 1024 * 1024;
+
     /**
      *
      * The values:
@@ -276,13 +668,7 @@ public class MazeNavigationDomain extends EvaluationDomain<Path> {
      * @return
      */
     public Maze getMaze() {
-        if (mazeType.equals("medium.map")) {
-            return Maze.getMediumMap();
-        } else if (mazeType.equals("hard.map")) {
-            return Maze.getHardMap();
-        } else {
-            return Maze.getMediumMap();
-        }
+        return Maze.getMap(mazeType);
     }
     private final String TIMESTEPS_KEY = "mazeDomain.timesteps";
     private final int DEFAULT_TIMESTEPS = 1000;
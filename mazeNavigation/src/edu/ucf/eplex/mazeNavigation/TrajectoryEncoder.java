@@ -0,0 +1,207 @@
+/**
+ * This software is a work of the U.S. Government. It is not subject to copyright
+ * protection and is in the public domain. It may be used as-is or modified and
+ * re-used. The author and the Air Force Institute of Technology would appreciate
+ * credit if this software or parts of it are used or modified for re-use.
+ */
+package edu.ucf.eplex.mazeNavigation;
+
+import com.anji.util.Properties;
+
+import edu.ucf.eplex.mazeNavigation.model.Path;
+import edu.ucf.eplex.mazeNavigation.model.Position;
+import edu.ucf.eplex.mazeNavigation.model.TrajectoryDescriptor;
+
+import java.util.Random;
+
+/**
+ * Reduces a robot's trajectory to a fixed-length {@link TrajectoryDescriptor}
+ * while the trial is simulated, so the full {@link Path} is not needed to
+ * compute its novelty.  Set by property <code>novelty.behavior.descriptor</code>;
+ * the values:
+ * <ul>
+ * <li><code>endpoint</code>, the final (x, y, theta) pose (the default),</li>
+ * <li><code>sampled</code>, the (x, y) location at
+ * <code>novelty.behavior.descriptor.samples</code> uniformly spaced timesteps,
+ * and</li>
+ * <li><code>projection</code>, a Gaussian random projection of every (x, y)
+ * location onto <code>novelty.behavior.descriptor.projection.size</code>
+ * dimensions</li>
+ * </ul>
+ * are currently supported.  Trials that end early are treated as though the
+ * robot stayed at its final pose until <code>mazeDomain.timesteps</code>,
+ * matching {@link Path#get(int)}.  The projection is scaled so that distances
+ * are comparable to those between sampled descriptors with half as many
+ * dimensions.
+ */
+public class TrajectoryEncoder {
+
+    private final String type;
+    private final int timesteps;
+    private final int dimensions;
+    private final int[] sampleSteps;
+    private final double[][] projectionX;
+    private final double[][] projectionY;
+    private final double[][] remainingX;
+    private final double[][] remainingY;
+
+    public TrajectoryEncoder(Properties props) {
+        type = props.getProperty(DESCRIPTOR_TYPE_KEY, DEFAULT_DESCRIPTOR_TYPE);
+        timesteps = props.getIntProperty(TIMESTEPS_KEY, DEFAULT_TIMESTEPS);
+
+        if (type.equalsIgnoreCase("sampled")) {
+            int samples = Math.max(props.getIntProperty(SAMPLES_KEY, DEFAULT_SAMPLES), 1);
+            dimensions = 2 * samples;
+            sampleSteps = new int[samples];
+            for (int i = 0; i < samples; i++) {
+                sampleSteps[i] = samples == 1 ? timesteps - 1
+                        : (int) Math.round((double) i * (timesteps - 1) / (samples - 1));
+            }
+        } else {
+            dimensions = type.equalsIgnoreCase("projection")
+                    ? Math.max(props.getIntProperty(PROJECTION_SIZE_KEY, DEFAULT_PROJECTION_SIZE), 1) : 3;
+            sampleSteps = null;
+        }
+
+        if (type.equalsIgnoreCase("projection")) {
+            Random rand = new Random(props.getLongProperty(PROJECTION_SEED_KEY, DEFAULT_PROJECTION_SEED));
+            double scale = Math.sqrt(0.5 / timesteps);
+            projectionX = new double[dimensions][timesteps];
+            projectionY = new double[dimensions][timesteps];
+            remainingX = new double[dimensions][timesteps + 1];
+            remainingY = new double[dimensions][timesteps + 1];
+            for (int p = 0; p < dimensions; p++) {
+                for (int t = 0; t < timesteps; t++) {
+                    projectionX[p][t] = rand.nextGaussian() * scale;
+                    projectionY[p][t] = rand.nextGaussian() * scale;
+                }
+                // The projection of a robot that sits still from step t onward
+                for (int t = timesteps - 1; t >= 0; t--) {
+                    remainingX[p][t] = remainingX[p][t + 1] + projectionX[p][t];
+                    remainingY[p][t] = remainingY[p][t + 1] + projectionY[p][t];
+                }
+            }
+        } else {
+            projectionX = projectionY = remainingX = remainingY = null;
+        }
+    }
+
+    /**
+     * @return The number of values in each descriptor.
+     */
+    public int getDimensionality() {
+        return dimensions;
+    }
+
+    /**
+     * @return <code>true</code> if the descriptor is the final pose alone.
+     */
+    public boolean isEndPoint() {
+        return sampleSteps == null && projectionX == null;
+    }
+
+    /**
+     * @param props The novelty properties
+     * @return <code>true</code> if property <code>novelty.behavior.descriptor</code>
+     * selects the final pose alone, as {@link #isEndPoint()} would for an
+     * encoder made from the properties.
+     */
+    public static boolean isEndPoint(Properties props) {
+        String aType = props.getProperty(DESCRIPTOR_TYPE_KEY, DEFAULT_DESCRIPTOR_TYPE);
+        return !aType.equalsIgnoreCase("sampled") && !aType.equalsIgnoreCase("projection");
+    }
+
+    /**
+     * @return A new recorder for one trial.
+     */
+    public Recorder newRecorder() {
+        return new Recorder();
+    }
+
+    /**
+     * Encodes a trajectory that has already been recorded.
+     *
+     * @param path The trajectory
+     * @return The same descriptor that a {@link Recorder} would have produced
+     */
+    public TrajectoryDescriptor encode(Path path) {
+        Recorder recorder = newRecorder();
+        for (int i = 0; i < path.size(); i++) {
+            recorder.record(path.getX(i), path.getY(i), path.getTheta(i));
+        }
+        return recorder.finish();
+    }
+
+    /**
+     * Accumulates the descriptor of one trial, one timestep at a time.
+     */
+    public class Recorder {
+
+        private final double[] values = new double[dimensions];
+        private double lastX, lastY, lastTheta;
+        private int step = 0;
+        private int nextSample = 0;
+
+        /**
+         * @param pose The robot's pose after the next timestep
+         */
+        public void record(Position pose) {
+            record(pose.getX(), pose.getY(), pose.getTheta());
+        }
+
+        /**
+         * Records the robot's pose after the next timestep.
+         */
+        public void record(double x, double y, double theta) {
+            lastX = x;
+            lastY = y;
+            lastTheta = theta;
+            if (sampleSteps != null) {
+                while (nextSample < sampleSteps.length && sampleSteps[nextSample] == step) {
+                    values[2 * nextSample] = x;
+                    values[2 * nextSample + 1] = y;
+                    nextSample++;
+                }
+            } else if (projectionX != null && step < timesteps) {
+                for (int p = 0; p < dimensions; p++) {
+                    values[p] += projectionX[p][step] * x + projectionY[p][step] * y;
+                }
+            }
+            step++;
+        }
+
+        /**
+         * @return The descriptor of the trajectory recorded so far.
+         */
+        public TrajectoryDescriptor finish() {
+            Position last = new Position(lastX, lastY, lastTheta);
+            if (sampleSteps == null && projectionX == null) {
+                return new TrajectoryDescriptor(last);
+            }
+            double[] result = values.clone();
+            if (sampleSteps != null) {
+                for (int i = nextSample; i < sampleSteps.length; i++) {
+                    result[2 * i] = last.getX();
+                    result[2 * i + 1] = last.getY();
+                }
+            } else {
+                int from = Math.min(step, timesteps);
+                for (int p = 0; p < dimensions; p++) {
+                    result[p] += remainingX[p][from] * last.getX() + remainingY[p][from] * last.getY();
+                }
+            }
+            return new TrajectoryDescriptor(result, last);
+        }
+    }
+
+    private static final String DESCRIPTOR_TYPE_KEY = "novelty.behavior.descriptor";
+    private static final String DEFAULT_DESCRIPTOR_TYPE = "endpoint";
+    private static final String SAMPLES_KEY = "novelty.behavior.descriptor.samples";
+    private static final int DEFAULT_SAMPLES = 20;
+    private static final String PROJECTION_SIZE_KEY = "novelty.behavior.descriptor.projection.size";
+    private static final int DEFAULT_PROJECTION_SIZE = 40;
+    private static final String PROJECTION_SEED_KEY = "novelty.behavior.descriptor.projection.seed";
+    private static final long DEFAULT_PROJECTION_SEED = 0;
+    private static final String TIMESTEPS_KEY = "mazeDomain.timesteps";
+    private static final int DEFAULT_TIMESTEPS = 1000;
+}
@@ -13,8 +13,6 @@ import edu.ucf.eplex.mazeNavigation.behaviorFramework.Behavior;
 import edu.ucf.eplex.mazeNavigation.behaviorFramework.State;
 import edu.ucf.eplex.naiecFramework.domain.Candidate;
 
-import java.util.List;
-
 /**
  * @author Brian Woolley (brian.woolley at ieee.org)
  *
@@ -24,6 +22,8 @@ public class ANN_Behavior implements Behavior {
     public ANN_Behavior(Candidate subject) {
     	assert(subject != null);
     	f_subject = subject;
+    	// Each behavior is one trial, which starts from a clean network state
+    	f_subject.resetANN();
     }
 
     /**
@@ -34,30 +34,20 @@ public class ANN_Behavior implements Behavior {
     @Override
     public Action genAction(State currentState) {
 
-        List<Double> range = currentState.getRangeReadings();
-        List<Double> goal = currentState.getGoalDetection();
-
-        double[] input = new double[11];
-        double[] out;
         // Activate ANN to find the recommended action
-        input[ 0] = range.get(0);
-        input[ 1] = range.get(1);
-        input[ 2] = range.get(2);
-        input[ 3] = range.get(3);
-        input[ 4] = range.get(4);
-        input[ 5] = range.get(5);
-        input[ 6] = goal.get(0);
-        input[ 7] = goal.get(1);
-        input[ 8] = goal.get(2);
-        input[ 9] = goal.get(3);
-        input[ 10] = 1; // bias
-
-        out = f_subject.next(input);
-
-        Action action = new Action();
+        int n = currentState.getSensorReadings(input);
+        input[n] = 1; // bias
+
+        f_subject.next(input, out);
+
         action.setTurnRate(out[0]);
         action.setVelocity(out[1]);
         return action;
     }
+
+    // Reused on every step; the returned action is only valid until the next call
+    private final double[] input = new double[11];
+    private final double[] out = new double[2];
+    private final Action action = new Action();
     private final Candidate f_subject;
 }
@@ -49,6 +49,21 @@ public class State {
 	public List<Double> getGoalDetection() {
 		return myRobot.getSensorArray().getGoalReadings();
 	}
+
+	/**
+	 * Writes the range readings followed by the goal detection into a buffer
+	 * without creating any objects.
+	 * 
+	 * @param readings The buffer, at least {@link #getSensorCount()} long
+	 * @return The number of readings written
+	 */
+	public int getSensorReadings(double[] readings) {
+		return myRobot.getSensorArray().getReadings(readings, 0);
+	}
+
+	public int getSensorCount() {
+		return myRobot.getSensorArray().size();
+	}
 	
 	private final Robot myRobot;
 }
@@ -0,0 +1,274 @@
+/**
+ * This software is a work of the U.S. Government. It is not subject to copyright
+ * protection and is in the public domain. It may be used as-is or modified and
+ * re-used. The author and the Air Force Institute of Technology would appreciate
+ * credit if this software or parts of it are used or modified for re-use.
+ */
+package edu.ucf.eplex.mazeNavigation.model;
+
+import com.anji.integration.Activator;
+import edu.ucf.eplex.mazeNavigation.util.Util;
+import edu.ucf.eplex.naiecFramework.ann.BatchActivator;
+import java.util.List;
+
+/**
+ * Simulates a population of robots in one maze in lock step.  Each robot is
+ * driven by its own network, as an {@link Environment} with an ANN behavior
+ * would drive it, and follows the same path; but the poses, velocities and
+ * turn rates of all the robots are held in arrays, their sensor readings are
+ * packed into one matrix, and their networks are activated together by a
+ * {@link BatchActivator}.
+ * <p>
+ * Robots are numbered in the order of their networks.  A robot that is
+ * {@link #stop(int) stopped} is dropped from the arrays and the batch before
+ * the next step, so the cost of a step follows the number of robots still
+ * running.  The robots' paths are recorded unless the environment is made
+ * without them, in which case only their latest poses are kept.  Instances
+ * are not thread safe.
+ */
+public class BatchEnvironment {
+
+    /**
+     * @param map The maze
+     * @param nets The robots' networks, each ready to start a new trial; the
+     * networks take the sensor readings and a bias, and give the turn rate
+     * and velocity
+     */
+    public BatchEnvironment(Maze map, List<? extends Activator> nets) {
+        this(map, nets, true);
+    }
+
+    /**
+     * @param map The maze
+     * @param nets The robots' networks, as for {@link #BatchEnvironment(Maze, List)}
+     * @param recordPaths <code>false</code> to keep only each robot's latest
+     * pose, not its path
+     */
+    public BatchEnvironment(Maze map, List<? extends Activator> nets, boolean recordPaths) {
+        myMap = map;
+        size = nets.size();
+        live = size;
+        running = size;
+        brains = new BatchActivator(nets);
+        // Every robot is sensed with the same sensors, pointed from its own pose
+        sensors = new Robot(map).getSensorArray();
+        inputDimension = brains.getInputDimension();
+        outputDimension = brains.getOutputDimension();
+        if (inputDimension != sensors.size() + 1 || outputDimension != 2) {
+            throw new IllegalArgumentException("expected networks of " + (sensors.size() + 1)
+                    + " inputs and 2 outputs, not " + inputDimension + " and " + outputDimension);
+        }
+
+        robot = new int[size];
+        x = new double[size];
+        y = new double[size];
+        theta = new double[size];
+        velocity = new double[size];
+        turnRate = new double[size];
+        stopped = new boolean[size];
+        hitWall = new boolean[size];
+        poseX = new double[size];
+        poseY = new double[size];
+        poseTheta = new double[size];
+        paths = recordPaths ? new Path[size] : null;
+        Position start = map.getStart();
+        for (int i = 0; i < size; i++) {
+            robot[i] = i;
+            x[i] = poseX[i] = start.getX();
+            y[i] = poseY[i] = start.getY();
+            theta[i] = poseTheta[i] = start.getTheta();
+            if (recordPaths) {
+                paths[i] = new Path();
+            }
+        }
+        stimuli = new double[size * inputDimension];
+        responses = new double[size * outputDimension];
+    }
+
+    /**
+     * Advances every running robot one timestep: each senses the maze, its
+     * network chooses an action, and it moves unless the move would take it
+     * into a wall.  The new pose is added to its path, if paths are recorded.
+     */
+    public void step() {
+        compact();
+        for (int k = 0; k < running; k++) {
+            sensors.sense(x[k], y[k], theta[k], myMap);
+            int offset = sensors.getReadings(stimuli, k * inputDimension);
+            stimuli[offset] = 1; // bias
+        }
+        brains.next(stimuli, responses);
+
+        for (int k = 0; k < running; k++) {
+            // The action, as applied by Robot.setTurnRate and Robot.setVelocity
+            double turn = responses[k * outputDimension];
+            double speed = responses[k * outputDimension + 1];
+            velocity[k] += Math.min(Math.max(speed - 0.5, -ACCELERATION), ACCELERATION);
+            velocity[k] = Math.min(Math.max(velocity[k], Robot.MIN_VELOCITY), Robot.MAX_VELOCITY);
+            turnRate[k] += Math.min(Math.max((turn - 0.5) * DEGS, -ANGULAR_ACCELERATION), ANGULAR_ACCELERATION);
+            turnRate[k] = Math.min(Math.max(turnRate[k], Robot.MIN_TURN_RATE), Robot.MAX_TURN_RATE);
+
+            // The move, as made by Environment.updateRobotPose
+            double dx = velocity[k] * Math.cos(theta[k]);
+            double dy = velocity[k] * Math.sin(theta[k]);
+            if (myMap.isNearWall(x[k] + dx, y[k] + dy, Robot.RADIUS)) {
+                hitWall[robot[k]] = true;
+            } else {
+                x[k] += dx;
+                y[k] += dy;
+            }
+            theta[k] = Util.normalize(theta[k] + turnRate[k]);
+            int i = robot[k];
+            poseX[i] = x[k];
+            poseY[i] = y[k];
+            poseTheta[i] = theta[k];
+            if (paths != null) {
+                paths[i].add(x[k], y[k], theta[k]);
+            }
+        }
+    }
+
+    /**
+     * Ends a robot's trial; it is not moved again.
+     *
+     * @param i The robot
+     */
+    public void stop(int i) {
+        if (!stopped[i]) {
+            stopped[i] = true;
+            live--;
+        }
+    }
+
+    /**
+     * @param i The robot
+     * @return <code>true</code> unless the robot has been stopped
+     */
+    public boolean isRunning(int i) {
+        return !stopped[i];
+    }
+
+    /**
+     * @return The number of robots not yet stopped
+     */
+    public int getRunningCount() {
+        return live;
+    }
+
+    /**
+     * @return The number of robots
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @param i The robot
+     * @return A copy of the robot's poses after each step so far
+     * @throws IllegalStateException if paths are not recorded
+     */
+    public Path getPath(int i) {
+        if (paths == null) {
+            throw new IllegalStateException("paths are not recorded");
+        }
+        return new Path(paths[i]);
+    }
+
+    /**
+     * @param i The robot
+     * @return The robot's pose, or its starting pose before the first step
+     */
+    public Position getPosition(int i) {
+        return new Position(poseX[i], poseY[i], poseTheta[i]);
+    }
+
+    /**
+     * @param i The robot
+     * @return The x coordinate of {@link #getPosition(int)}
+     */
+    public double getX(int i) {
+        return poseX[i];
+    }
+
+    /**
+     * @param i The robot
+     * @return The y coordinate of {@link #getPosition(int)}
+     */
+    public double getY(int i) {
+        return poseY[i];
+    }
+
+    /**
+     * @param i The robot
+     * @return The heading of {@link #getPosition(int)}
+     */
+    public double getTheta(int i) {
+        return poseTheta[i];
+    }
+
+    /**
+     * @param i The robot
+     * @return <code>true</code> if the robot has tried to move into a wall
+     */
+    public boolean isHitWallEventSet(int i) {
+        return hitWall[i];
+    }
+
+    /**
+     * @param i The robot
+     * @return The distance from the robot to the goal
+     */
+    public double distToGoal(int i) {
+        return myMap.getGoal().distance(poseX[i], poseY[i]);
+    }
+
+    public Maze getMap() {
+        return myMap;
+    }
+
+    /**
+     * Drops the robots stopped since the last step from the arrays and the
+     * batch, keeping the rest in order.
+     */
+    private void compact() {
+        if (live == running) {
+            return;
+        }
+        boolean[] keep = new boolean[running];
+        int kept = 0;
+        for (int k = 0; k < running; k++) {
+            keep[k] = !stopped[robot[k]];
+            if (keep[k]) {
+                robot[kept] = robot[k];
+                x[kept] = x[k];
+                y[kept] = y[k];
+                theta[kept] = theta[k];
+                velocity[kept] = velocity[k];
+                turnRate[kept] = turnRate[k];
+                kept++;
+            }
+        }
+        brains.retain(keep);
+        running = kept;
+    }
+
+    private final Maze myMap;
+    private final int size;
+    private final BatchActivator brains;
+    private final SensorArray sensors;
+    private final int inputDimension, outputDimension;
+    private final double[] stimuli, responses;
+    // The running robots occupy the first 'running' entries of these arrays
+    private final int[] robot;
+    private final double[] x, y, theta, velocity, turnRate;
+    private int running;
+    // These are indexed by robot
+    private final boolean[] stopped, hitWall;
+    private final double[] poseX, poseY, poseTheta;
+    private final Path[] paths;
+    private int live;
+
+    private static final double DEGS = Math.PI / 180;
+    private static final double ACCELERATION = Robot.MAX_VELOCITY / 6;
+    private static final double ANGULAR_ACCELERATION = Robot.MAX_TURN_RATE / 6;
+}
@@ -0,0 +1,106 @@
+/**
+ * This software is a work of the U.S. Government. It is not subject to copyright
+ * protection and is in the public domain. It may be used as-is or modified and
+ * re-used. The author and the Air Force Institute of Technology would appreciate
+ * credit if this software or parts of it are used or modified for re-use.
+ */
+package edu.ucf.eplex.mazeNavigation.model;
+
+/**
+ * The distance to the nearest wall, sampled on a square lattice over the
+ * maze.  The distance changes no faster than the point moves, so a point
+ * whose nearest sample is well clear of (or well inside) the query distance
+ * is answered from the sample alone; points near the boundary fall back to
+ * the exact test of {@link WallTable#isWithin(double, double, double)}, so
+ * every answer is the same as the exact one.
+ */
+public final class DistanceField {
+
+    /**
+     * Samples the distance to the walls, each by a search of the nearby cells
+     * of the walls' grid, or by a pass over the walls if they have none.  The
+     * spacing is widened if needed to keep to {@value #MAX_SAMPLES} samples.
+     *
+     * @param walls The walls of the maze
+     * @param resolution The finest spacing of the samples
+     */
+    DistanceField(WallTable walls, double resolution) {
+        assert (resolution > 0);
+        this.walls = walls;
+        double loX = Double.POSITIVE_INFINITY, loY = Double.POSITIVE_INFINITY;
+        double hiX = Double.NEGATIVE_INFINITY, hiY = Double.NEGATIVE_INFINITY;
+        for (int i = 0; i < walls.size(); i++) {
+            loX = Math.min(loX, Math.min(walls.x1[i], walls.x2[i]));
+            loY = Math.min(loY, Math.min(walls.y1[i], walls.y2[i]));
+            hiX = Math.max(hiX, Math.max(walls.x1[i], walls.x2[i]));
+            hiY = Math.max(hiY, Math.max(walls.y1[i], walls.y2[i]));
+        }
+        if (walls.size() == 0) {
+            loX = loY = hiX = hiY = 0;
+        }
+        while (samples(hiX - loX, resolution) * samples(hiY - loY, resolution) > MAX_SAMPLES) {
+            resolution *= COARSENING;
+        }
+        this.resolution = resolution;
+        minX = loX;
+        minY = loY;
+        columns = (int) samples(hiX - loX, resolution);
+        rows = (int) samples(hiY - loY, resolution);
+        maxX = minX + (columns - 1) * resolution;
+        maxY = minY + (rows - 1) * resolution;
+        // A point is at most half a diagonal from its nearest sample; the
+        // slack covers rounding in the sampled and exact distances
+        reach = resolution * Math.sqrt(0.5) + SLACK * (1 + resolution);
+
+        samples = new double[columns * rows];
+        for (int r = 0; r < rows; r++) {
+            for (int c = 0; c < columns; c++) {
+                samples[r * columns + c] = walls.distance(minX + c * resolution, minY + r * resolution);
+            }
+        }
+    }
+
+    /**
+     * @return <code>true</code> if any wall is nearer than <code>distance</code>
+     * to (x, y); the same answer as {@link WallTable#isWithin(double, double, double)}
+     */
+    public boolean isWithin(double x, double y, double distance) {
+        if (x >= minX && x <= maxX && y >= minY && y <= maxY) {
+            int c = (int) Math.round((x - minX) / resolution);
+            int r = (int) Math.round((y - minY) / resolution);
+            double sample = samples[r * columns + c];
+            if (sample - reach >= distance) {
+                return false;
+            }
+            if (sample + reach < distance) {
+                return true;
+            }
+        }
+        return walls.isWithin(x, y, distance);
+    }
+
+    /**
+     * @return The number of samples spanning a length
+     */
+    private static long samples(double length, double resolution) {
+        return (long) Math.ceil(length / resolution) + 1;
+    }
+
+    /**
+     * @return The spacing of the samples, which may be wider than asked for
+     */
+    public double getResolution() {
+        return resolution;
+    }
+
+    private final WallTable walls;
+    private final double resolution, reach;
+    private final double minX, minY, maxX, maxY;
+    private final int columns, rows;
+    private final double[] samples;
+
+    private static final double SLACK = 1e-9;
+    /** The most samples a field holds, 8MB of distances */
+    public static final int MAX_SAMPLES = 1 << 20;
+    private static final double COARSENING = 1.25;
+}
@@ -0,0 +1,236 @@
+/**
+ * This software is a work of the U.S. Government. It is not subject to copyright
+ * protection and is in the public domain. It may be used as-is or modified and
+ * re-used. The author and the Air Force Institute of Technology would appreciate
+ * credit if this software or parts of it are used or modified for re-use.
+ */
+package edu.ucf.eplex.mazeNavigation.model;
+
+import java.util.Arrays;
+
+/**
+ * A finished path kept compactly, for playback and publishing.  Each pose is
+ * rounded to a fixed-point grid (<code>resolution</code> maze units for x and
+ * y, {@value #ANGULAR_STEPS} steps per turn for theta), and each step is
+ * stored as the change from the step before, in zigzag varints of one or two
+ * bytes.  Every {@value #CHECKPOINT_INTERVAL} steps the rounded pose is stored
+ * whole, so any pose is decoded from the checkpoint before it.
+ * <p>
+ * Decoded coordinates are within half a step of the recorded ones, except the
+ * last pose, which is kept exactly so that fitness and behavior taken from the
+ * end of the path are unchanged.  Reads go through a {@link Cursor} that
+ * carries on from the pose read before, so reading the path in order costs
+ * one step per pose.  The path cannot be added to.
+ */
+public final class EncodedPath extends Path {
+
+    /**
+     * @param path The poses to encode; must not be empty
+     * @param resolution The spacing of the fixed-point grid for x and y
+     */
+    public EncodedPath(Path path, double resolution) {
+        super(0);
+        if (path.isEmpty()) {
+            throw new IllegalArgumentException("cannot encode an empty path");
+        }
+        if (!(resolution > 0)) {
+            throw new IllegalArgumentException("resolution must be positive: " + resolution);
+        }
+        this.resolution = resolution;
+        size = path.size();
+        lastX = path.getX(size - 1);
+        lastY = path.getY(size - 1);
+        lastTheta = path.getTheta(size - 1);
+
+        checkpoints = new int[4 * ((size + CHECKPOINT_INTERVAL - 1) / CHECKPOINT_INTERVAL)];
+        byte[] bytes = new byte[3 * size];
+        int length = 0;
+        int qx = 0, qy = 0, qt = 0;
+        for (int i = 0; i < size; i++) {
+            int x = (int) Math.round(path.getX(i) / resolution);
+            int y = (int) Math.round(path.getY(i) / resolution);
+            int t = (int) Math.round(path.getTheta(i) / ANGULAR_RESOLUTION);
+            if (i % CHECKPOINT_INTERVAL == 0) {
+                int c = 4 * (i / CHECKPOINT_INTERVAL);
+                checkpoints[c] = length;
+                checkpoints[c + 1] = x;
+                checkpoints[c + 2] = y;
+                checkpoints[c + 3] = t;
+            } else {
+                if (length + 3 * MAX_VARINT_BYTES > bytes.length) {
+                    bytes = Arrays.copyOf(bytes, 2 * bytes.length + 3 * MAX_VARINT_BYTES);
+                }
+                length = writeVarint(bytes, length, x - qx);
+                length = writeVarint(bytes, length, y - qy);
+                length = writeVarint(bytes, length, t - qt);
+            }
+            qx = x;
+            qy = y;
+            qt = t;
+        }
+        data = Arrays.copyOf(bytes, length);
+        lookup = new Cursor();
+    }
+
+    /**
+     * @throws UnsupportedOperationException always; an encoded path is finished
+     */
+    @Override
+    public void add(double x, double y, double theta) {
+        throw new UnsupportedOperationException("an encoded path cannot be extended");
+    }
+
+    @Override
+    public double getX(int index) {
+        if (index == size - 1) {
+            return lastX;
+        }
+        synchronized (lookup) {
+            return lookup.seek(index).getX();
+        }
+    }
+
+    @Override
+    public double getY(int index) {
+        if (index == size - 1) {
+            return lastY;
+        }
+        synchronized (lookup) {
+            return lookup.seek(index).getY();
+        }
+    }
+
+    @Override
+    public double getTheta(int index) {
+        if (index == size - 1) {
+            return lastTheta;
+        }
+        synchronized (lookup) {
+            return lookup.seek(index).getTheta();
+        }
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return A new cursor, for reading the path from another thread without
+     * sharing the path's own
+     */
+    public Cursor cursor() {
+        return new Cursor();
+    }
+
+    public double getResolution() {
+        return resolution;
+    }
+
+    /**
+     * @return The number of bytes of encoded steps and checkpoints
+     */
+    public int getEncodedSize() {
+        return data.length + 4 * checkpoints.length;
+    }
+
+    /**
+     * Decodes the rounded poses of the path, one at a time.
+     */
+    public class Cursor {
+
+        private int index = -1;
+        private int position;
+        private int qx, qy, qt;
+
+        /**
+         * Moves to a pose: forward from the current pose when that is in the
+         * same stretch between checkpoints, otherwise from the checkpoint
+         * before it.
+         *
+         * @return This cursor
+         */
+        public Cursor seek(int index) {
+            if (index < 0 || index >= size) {
+                throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+            }
+            int checkpoint = index / CHECKPOINT_INTERVAL;
+            if (this.index > index || this.index < 0 || this.index / CHECKPOINT_INTERVAL != checkpoint) {
+                int c = 4 * checkpoint;
+                this.index = checkpoint * CHECKPOINT_INTERVAL;
+                position = checkpoints[c];
+                qx = checkpoints[c + 1];
+                qy = checkpoints[c + 2];
+                qt = checkpoints[c + 3];
+            }
+            while (this.index < index) {
+                qx += readVarint();
+                qy += readVarint();
+                qt += readVarint();
+                this.index++;
+            }
+            return this;
+        }
+
+        public int getIndex() {
+            return index;
+        }
+
+        public double getX() {
+            return qx * resolution;
+        }
+
+        public double getY() {
+            return qy * resolution;
+        }
+
+        public double getTheta() {
+            return qt * ANGULAR_RESOLUTION;
+        }
+
+        private int readVarint() {
+            int zigzag = 0;
+            int shift = 0;
+            byte b;
+            do {
+                b = data[position++];
+                zigzag |= (b & 0x7f) << shift;
+                shift += 7;
+            } while (b < 0);
+            return (zigzag >>> 1) ^ -(zigzag & 1);
+        }
+    }
+
+    /**
+     * Writes a value as a zigzag varint: small values of either sign take one
+     * byte, seven bits per byte, with the high bit marking a following byte.
+     *
+     * @return The offset after the value
+     */
+    private static int writeVarint(byte[] bytes, int offset, int value) {
+        int zigzag = (value << 1) ^ (value >> 31);
+        while ((zigzag & ~0x7f) != 0) {
+            bytes[offset++] = (byte) ((zigzag & 0x7f) | 0x80);
+            zigzag >>>= 7;
+        }
+        bytes[offset++] = (byte) zigzag;
+        return offset;
+    }
+
+    private final int size;
+    private final double resolution;
+    private final double lastX, lastY, lastTheta;
+    private final byte[] data;
+    // Per checkpoint: the offset of the following step in data, then the rounded x, y and theta
+    private final int[] checkpoints;
+    private final Cursor lookup;
+
+    /** The poses between stored whole poses */
+    public static final int CHECKPOINT_INTERVAL = 32;
+    /** The steps of the fixed-point grid for theta, per turn */
+    public static final int ANGULAR_STEPS = 4096;
+    /** The default spacing of the fixed-point grid for x and y */
+    public static final double DEFAULT_RESOLUTION = 1.0 / 16;
+    private static final double ANGULAR_RESOLUTION = 2 * Math.PI / ANGULAR_STEPS;
+    private static final int MAX_VARINT_BYTES = 5;
+}
@@ -76,12 +76,7 @@ public class Environment extends Observable implements Simulatable {
     }
 
 	private boolean isValid(Position pose) {
-        for (Line2D wall : myMap.getWalls()) {
-            if (wall.ptSegDist(pose) < myRobot.getRadius()) {
-                return false;
-            }
-        }
-        return true;
+        return !myMap.isNearWall(pose.getX(), pose.getY(), myRobot.getRadius());
     }
 
     /**
@@ -9,6 +9,7 @@
 package edu.ucf.eplex.mazeNavigation.model;
 
 import java.awt.geom.Arc2D;
+import java.awt.geom.Line2D;
 import java.awt.geom.Point2D;
 
 import edu.ucf.eplex.mazeNavigation.util.Util;
@@ -19,18 +20,79 @@ import edu.ucf.eplex.mazeNavigation.util.Util;
  */
 public class GoalDetector {
 
+	/**
+	 * The goal's bearing decides the detector only for a field of view of at
+	 * most Pi - {@value #FOV_MARGIN}.  Near Pi the chord passes within
+	 * rounding of the robot, and beyond Pi behind it, so the line to a goal
+	 * outside the sector can touch the chord; every goal is then decided by
+	 * the chord test.
+	 * 
+	 * @param centerlineAngle The direction the detector faces, relative to the heading
+	 * @param fieldOfView The width of the detector's sector
+	 */
 	public GoalDetector(double centerlineAngle, double fieldOfView) {
 		assert(fieldOfView > 0);
 
 		angSt = Util.normalize(centerlineAngle - fieldOfView/2);
 		angExt = fieldOfView;
+		// The arc runs clockwise from heading-angSt, so relative to the heading
+		// it is centered on -centerlineAngle
+		sectorCenter = Util.normalize(-angSt - angExt/2);
+		sectorHalfWidth = angExt/2;
+		bearingDecides = fieldOfView <= Math.PI - FOV_MARGIN;
 	}
 
 	public void setPose(Position pose) {
-		double x = pose.getX(),
-			   y = pose.getY(),
-			   heading = pose.getTheta();
-		arc.setArcByCenter(x, y, 1, toDeg(angSt-heading), toDeg(angExt), Arc2D.OPEN);
+		setPose(pose.getX(), pose.getY(), pose.getTheta());
+	}
+
+	void setPose(double x, double y, double heading) {
+		poseX = x;
+		poseY = y;
+		poseHeading = heading;
+	}
+
+	/**
+	 * Activates the detector if the goal lies in its sector, beyond the chord
+	 * between the ends of its arc.
+	 * <p>
+	 * The goal's bearing decides most cases.  A goal within
+	 * {@value #BOUNDARY} radians of the sector's edges, or within a unit of
+	 * the robot (where the chord matters), is decided as the arc always has
+	 * been: by whether the line to the goal crosses the chord, with touching
+	 * counted as crossing.
+	 * 
+	 * @param bearing The direction of the goal from the robot, relative to its heading
+	 * @param distance The distance to the goal
+	 */
+	void detect(double bearing, double distance, Point2D goal) {
+		double offset = Math.abs(Util.normalize(bearing - sectorCenter));
+		if (!bearingDecides) {
+			setActive(crossesChord(goal.getX(), goal.getY()));
+		} else if (offset > sectorHalfWidth + BOUNDARY) {
+			setActive(false);
+		} else if (offset < sectorHalfWidth - BOUNDARY && distance > 1 + BOUNDARY) {
+			setActive(true);
+		} else {
+			setActive(crossesChord(goal.getX(), goal.getY()));
+		}
+	}
+
+	/**
+	 * Tests the line from the robot to the goal against the chord of the arc,
+	 * computing the ends of the chord as {@link Arc2D#getStartPoint()} and
+	 * {@link Arc2D#getEndPoint()} would for {@link #getArc()}.
+	 */
+	boolean crossesChord(double goalX, double goalY) {
+		double arcX = poseX - RADIUS, arcY = poseY - RADIUS, size = RADIUS * 2.0;
+		double angleStart = toDeg(angSt-poseHeading), angleExtent = toDeg(angExt);
+		double start = Math.toRadians(-angleStart);
+		double end = Math.toRadians(-angleStart - angleExtent);
+		double x1 = arcX + (Math.cos(start) * 0.5 + 0.5) * size;
+		double y1 = arcY + (Math.sin(start) * 0.5 + 0.5) * size;
+		double x2 = arcX + (Math.cos(end) * 0.5 + 0.5) * size;
+		double y2 = arcY + (Math.sin(end) * 0.5 + 0.5) * size;
+		return Line2D.linesIntersect(poseX, poseY, goalX, goalY, x1, y1, x2, y2);
 	}
 	
 	private double toDeg(double rad) {
@@ -50,19 +112,31 @@ public class GoalDetector {
 		else		  return 0;
 	}
 	
+	/**
+	 * @return The detector's arc at the current pose, for display
+	 */
 	public Arc2D getArc() {
+		Arc2D arc = new Arc2D.Double();
+		arc.setArcByCenter(poseX, poseY, RADIUS, toDeg(angSt-poseHeading), toDeg(angExt), Arc2D.OPEN);
 		return arc;
 	}
 	
 	public Point2D getP1() {
-		return arc.getStartPoint();
+		return getArc().getStartPoint();
 	}
 	
 	public Point2D getP2() {
-		return arc.getEndPoint();
+		return getArc().getEndPoint();
 	}
 
 	private boolean isActive = false;
-	private final Arc2D arc = new Arc2D.Double();
+	private double poseX, poseY, poseHeading;
 	private final double angSt, angExt;
+	private final double sectorCenter, sectorHalfWidth;
+	private final boolean bearingDecides;
+	private static final double RADIUS = 1;
+	/** The margin around the sector's edges within which the chord is tested */
+	private static final double BOUNDARY = 1e-9;
+	/** How far below Pi the field of view must be for the bearing to decide */
+	private static final double FOV_MARGIN = 1e-6;
 }
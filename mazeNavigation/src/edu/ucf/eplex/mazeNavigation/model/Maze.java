@@ -28,6 +28,7 @@ public class Maze {
             setupClassicMedMap();
         }
         walls = Collections.unmodifiableCollection(walls);
+        wallTable = new WallTable(walls);
         breadCrumbs = Collections.unmodifiableList(breadCrumbs);
     }
     
@@ -46,6 +47,22 @@ public class Maze {
     public static Maze getHardMap() {
         return instanceOfHardMap;
     }
+
+    /**
+     * The values: <code>medium.map</code> and <code>hard.map</code> are
+     * currently supported.  Any other value, or <code>null</code>, returns
+     * the medium map.
+     *
+     * @param aMapType The name of the map
+     * @return The named map
+     */
+    public static Maze getMap(String aMapType) {
+        if ("hard.map".equals(aMapType)) {
+            return getHardMap();
+        } else {
+            return getMediumMap();
+        }
+    }
     
     private void loadMap(String aFile) {
         // TODO Open file stream
@@ -81,6 +98,65 @@ public class Maze {
         return walls;
     }
 
+    /**
+     * @return The walls as arrays, for ray casting; {@link #getWalls()} is
+     * kept for rendering
+     */
+    public WallTable getWallTable() {
+        return wallTable;
+    }
+
+    /**
+     * Tests whether a circle overlaps a wall, using the distance field when it
+     * is enabled and the exact test would compare the circle with more than
+     * {@value #FIELD_MIN_WALLS} walls.  The answer is the same either way.
+     *
+     * @return <code>true</code> if any wall is nearer than <code>distance</code>
+     * to (x, y)
+     */
+    public boolean isNearWall(double x, double y, double distance) {
+        if (wallTable.getWallsTested(distance) > FIELD_MIN_WALLS) {
+            DistanceField field = getDistanceField();
+            if (field != null) {
+                return field.isWithin(x, y, distance);
+            }
+        }
+        return wallTable.isWithin(x, y, distance);
+    }
+
+    /**
+     * @return The distance field, which is sampled the first time it is
+     * needed, or <code>null</code> if it is disabled
+     */
+    public DistanceField getDistanceField() {
+        DistanceField field = distanceField;
+        if (field == null && fieldResolution > 0) {
+            synchronized (this) {
+                field = distanceField;
+                if (field == null && fieldResolution > 0) {
+                    field = new DistanceField(wallTable, fieldResolution);
+                    distanceField = field;
+                }
+            }
+        }
+        return field;
+    }
+
+    /**
+     * Sets the spacing of the distance field's samples; finer fields take
+     * longer to build but send fewer collision tests to the exact check.  The
+     * spacing is widened if the field would hold more than
+     * {@link DistanceField#MAX_SAMPLES} samples.
+     *
+     * @param resolution The spacing, or 0 to disable the field
+     */
+    public synchronized void setDistanceFieldResolution(double resolution) {
+        if (resolution != fieldResolution) {
+            fieldResolution = Math.max(resolution, 0);
+            distanceField = null;
+        }
+    }
+
     public List<Position> getBreadCrumbs() {
         return breadCrumbs;
     }
@@ -195,6 +271,13 @@ public class Maze {
     protected Position start;
     protected Position goal;
     protected Collection<Line2D> walls = new HashSet<Line2D>();
+    private final WallTable wallTable;
+    private volatile DistanceField distanceField;
+    private volatile double fieldResolution = DEFAULT_FIELD_RESOLUTION;
+    /** The default spacing of the distance field's samples */
+    public static final double DEFAULT_FIELD_RESOLUTION = 1.0;
+    /** The distance field is used only when the exact test would compare a point with more walls than this */
+    public static final int FIELD_MIN_WALLS = 4;
     protected List<Position> breadCrumbs = new ArrayList<Position>();
     protected Dimension dimensions;
 
@@ -8,29 +8,129 @@
  */
 package edu.ucf.eplex.mazeNavigation.model;
 
-import java.util.ArrayList;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.RandomAccess;
 
 /**
+ * The poses of a robot after each timestep.  The poses are packed into
+ * growable arrays of coordinates rather than kept as one {@link Position}
+ * object each; {@link #get(int)} returns a new <code>Position</code> holding
+ * the stored pose, so changes to it do not reach the path.  Poses can only
+ * be appended.  A finished path can be kept in far less memory as an
+ * {@link EncodedPath}.
  *
  * @author Brian Woolley (brian.woolley at ieee.org)
  */
-public class Path extends ArrayList<Position> {
+public class Path extends AbstractList<Position> implements RandomAccess {
 
-    public Path() {}
-    
+    public Path() {
+        this(INITIAL_CAPACITY);
+    }
+
+    /**
+     * @param capacity The number of poses to make room for
+     */
+    public Path(int capacity) {
+        if (capacity > 0) {
+            xs = new double[capacity];
+            ys = new double[capacity];
+            thetas = new double[capacity];
+        } else {
+            xs = ys = thetas = EMPTY;
+        }
+    }
+
+    /**
+     * Copies a path, with no room to spare.
+     */
     Path(Path path) {
-        addAll(path);
+        this(path.size());
+        for (int i = 0; i < path.size(); i++) {
+            add(path.getX(i), path.getY(i), path.getTheta(i));
+        }
     }
 
+    @Override
+    public boolean add(Position pose) {
+        add(pose.getX(), pose.getY(), pose.getTheta());
+        return true;
+    }
+
+    /**
+     * Appends a pose; <code>theta</code> is expected to be normalized, as
+     * {@link Position#getTheta()} is.
+     */
+    public void add(double x, double y, double theta) {
+        if (size == xs.length) {
+            int capacity = size + (size >> 1) + 1;
+            xs = Arrays.copyOf(xs, capacity);
+            ys = Arrays.copyOf(ys, capacity);
+            thetas = Arrays.copyOf(thetas, capacity);
+        }
+        xs[size] = x;
+        ys[size] = y;
+        thetas[size] = theta;
+        size++;
+        modCount++;
+    }
+
+    /**
+     * @return A copy of the pose at <code>index</code>, or of the last pose if
+     * the path is shorter than that
+     */
     @Override
     public Position get(int index) {
-    	if (index >= size()) 
-    		return getLast();
-    	else 
-    		return super.get(index);
+        if (index >= size()) {
+            return getLast();
+        }
+        return new Position(getX(index), getY(index), getTheta(index));
     }
-    
+
     public Position getLast() {
-        return get(size()-1);
+        return get(size() - 1);
     }
+
+    public double getX(int index) {
+        checkIndex(index);
+        return xs[index];
+    }
+
+    public double getY(int index) {
+        checkIndex(index);
+        return ys[index];
+    }
+
+    public double getTheta(int index) {
+        checkIndex(index);
+        return thetas[index];
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Releases the room held for poses that have not been added.
+     */
+    public void trimToSize() {
+        if (size < xs.length && size > 0) {
+            xs = Arrays.copyOf(xs, size);
+            ys = Arrays.copyOf(ys, size);
+            thetas = Arrays.copyOf(thetas, size);
+        }
+    }
+
+    private void checkIndex(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        }
+    }
+
+    private double[] xs, ys, thetas;
+    private int size = 0;
+
+    private static final double[] EMPTY = new double[0];
+    private static final int INITIAL_CAPACITY = 16;
 }
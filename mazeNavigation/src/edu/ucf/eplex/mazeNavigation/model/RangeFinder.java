@@ -9,7 +9,6 @@
 package edu.ucf.eplex.mazeNavigation.model;
 
 import java.awt.geom.Line2D;
-import java.awt.geom.Point2D;
 
 import edu.ucf.eplex.mazeNavigation.util.Util;
 
@@ -26,16 +25,44 @@ public class RangeFinder {
 	}
 	
 	public void setPose(Position pose) {
-		double theta = Util.normalize(pose.getTheta() + beamAngle);
-		double dx = Math.cos(theta) * maxRange;
-		double dy = Math.sin(theta) * maxRange;
+		setPose(pose.getX(), pose.getY(), pose.getTheta());
+	}
+	
+	/**
+	 * Points the beam from (x, y) out to its full range; the beam is reused
+	 * rather than replaced, so no objects are created.
+	 */
+	void setPose(double x, double y, double heading) {
+		double theta = Util.normalize(heading + beamAngle);
+		dx = Math.cos(theta) * maxRange;
+		dy = Math.sin(theta) * maxRange;
 		
-		Point2D endPt = new Point2D.Double(pose.getX()+dx, pose.getY()+dy);
-		beam = new Line2D.Double(pose, endPt);
+		beam.setLine(x, y, x+dx, y+dy);
+		range = 1;
+	}
+	
+	/**
+	 * Shortens the beam to end where it meets a wall.
+	 * 
+	 * @param hit The fraction of the full range at which the beam meets the
+	 * nearest wall, as found by {@link WallTable#cast(double, double, double, double)}
+	 */
+	void setHit(double hit) {
+		range = hit;
+		beam.x2 = beam.x1 + hit*dx;
+		beam.y2 = beam.y1 + hit*dy;
+	}
+	
+	double getDX() {
+		return dx;
+	}
+	
+	double getDY() {
+		return dy;
 	}
 	
 	public double reading() {
-		return beam.getP1().distance(beam.getP2())/maxRange;
+		return range;
 	}
 	
 	public Line2D getBeam() {
@@ -45,5 +72,6 @@ public class RangeFinder {
 	
 	private final double beamAngle;
 	private final double maxRange;
-	private Line2D beam;
+	private final Line2D.Double beam = new Line2D.Double();
+	private double dx, dy, range = 1;
 }
@@ -9,9 +9,7 @@
 package edu.ucf.eplex.mazeNavigation.model;
 
 import edu.ucf.eplex.mazeNavigation.behaviorFramework.State;
-import edu.ucf.eplex.mazeNavigation.util.Util;
 
-import java.awt.geom.Line2D;
 import java.awt.geom.Point2D;
 
 /**
@@ -154,24 +152,7 @@ public class Robot implements Simulatable {
      * the nearest wall
      */
     protected void updateSensors() {
-		sensorArray.setPose(myPose);
-
-		// Limits the length of the sensor beam to intersection of the nearest wall
-        for (Line2D beam : sensorArray.getBeams()) {
-            for (Line2D wall : myMap.getWalls()) {
-                if (beam.intersectsLine(wall)) {
-                    Point2D p1 = beam.getP1();
-                    Point2D p2 = Util.intersection(beam, wall);
-                    beam.setLine(p1, p2);
-                }
-            }
-        }
-        // Set the sensor active if the goal is detected by the observer in an angular region from A to B
-        for (GoalDetector gd : sensorArray.getGoalDetectors()) {
-            Line2D testSeg = new Line2D.Double(gd.getP1(), gd.getP2());
-            Line2D pathToGoal = new Line2D.Double(myPose, myMap.getGoal());
-            gd.setActive(testSeg.intersectsLine(pathToGoal));
-        }
+		sensorArray.sense(myPose.getX(), myPose.getY(), myPose.getTheta(), myMap);
     }
 
 	protected Position myPose;
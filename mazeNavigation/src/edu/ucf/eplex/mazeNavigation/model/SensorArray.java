@@ -10,9 +10,12 @@ package edu.ucf.eplex.mazeNavigation.model;
 
 import java.awt.geom.Arc2D;
 import java.awt.geom.Line2D;
+import java.awt.geom.Point2D;
 import java.util.ArrayList;
 import java.util.List;
 
+import edu.ucf.eplex.mazeNavigation.util.Util;
+
 /**
  * @author Brian Woolley (brian.woolley at ieee.org)
  *
@@ -20,10 +23,57 @@ import java.util.List;
 public class SensorArray {
 
 	public void setPose(Position pose) {
-		for (RangeFinder a : rangeFinders)
-			a.setPose(pose);		
-		for (GoalDetector b : goalDetectors)
-			b.setPose(pose);
+		setPose(pose.getX(), pose.getY(), pose.getTheta());
+	}
+
+	void setPose(double x, double y, double heading) {
+		for (int i = 0; i < rangeFinders.size(); i++)
+			rangeFinders.get(i).setPose(x, y, heading);
+		for (int i = 0; i < goalDetectors.size(); i++)
+			goalDetectors.get(i).setPose(x, y, heading);
+	}
+
+	/**
+	 * Points the sensors from a pose and takes their readings.
+	 * 
+	 * @param map The maze whose walls limit the beams and whose goal is detected
+	 */
+	void sense(double x, double y, double heading, Maze map) {
+		setPose(x, y, heading);
+		// Limits the length of the sensor beam to intersection of the nearest wall
+		castBeams(x, y, map.getWallTable());
+		// Set the sensor active if the goal is detected by the observer in an angular region from A to B
+		detectGoal(x, y, heading, map.getGoal());
+	}
+
+	/**
+	 * Shortens each beam to end at the nearest wall it crosses.
+	 */
+	private void castBeams(double x, double y, WallTable walls) {
+		int n = rangeFinders.size();
+		if (hits.length != n) {
+			beamX = new double[n];
+			beamY = new double[n];
+			hits = new double[n];
+		}
+		for (int i = 0; i < n; i++) {
+			beamX[i] = rangeFinders.get(i).getDX();
+			beamY[i] = rangeFinders.get(i).getDY();
+		}
+		walls.cast(x, y, beamX, beamY, hits);
+		for (int i = 0; i < n; i++)
+			rangeFinders.get(i).setHit(hits[i]);
+	}
+
+	/**
+	 * Activates the goal detectors that the goal lies in the direction of.
+	 */
+	private void detectGoal(double x, double y, double heading, Point2D goal) {
+		double dx = goal.getX() - x, dy = goal.getY() - y;
+		double bearing = Util.normalize(Math.atan2(dy, dx) - heading);
+		double distance = Math.sqrt(dx * dx + dy * dy);
+		for (int i = 0; i < goalDetectors.size(); i++)
+			goalDetectors.get(i).detect(bearing, distance, goal);
 	}
 
 	public void addRangeFinder(double angle, double maxRange) {
@@ -34,6 +84,30 @@ public class SensorArray {
 		goalDetectors.add(new GoalDetector(angle, fieldOfView));
 	}
 	
+	/**
+	 * @return The number of readings written by {@link #getReadings(double[], int)}
+	 */
+	public int size() {
+		return rangeFinders.size() + goalDetectors.size();
+	}
+
+	/**
+	 * Writes the range readings followed by the goal readings into a buffer.
+	 * Unlike the <code>List</code> methods, which are kept for the GUI, this
+	 * creates no objects, so it can be called on every step of a simulation.
+	 * 
+	 * @param readings The buffer
+	 * @param offset The index of the first reading in the buffer
+	 * @return The index after the last reading
+	 */
+	public int getReadings(double[] readings, int offset) {
+		for (int i = 0; i < rangeFinders.size(); i++)
+			readings[offset++] = rangeFinders.get(i).reading();
+		for (int i = 0; i < goalDetectors.size(); i++)
+			readings[offset++] = goalDetectors.get(i).reading();
+		return offset;
+	}
+
 	public List<Double> getRangeReadings() {
 		List<Double> ranges = new ArrayList<Double>();
 		for(RangeFinder x : rangeFinders) {
@@ -73,4 +147,6 @@ public class SensorArray {
 	
 	private final List<RangeFinder> rangeFinders = new ArrayList<RangeFinder>();
 	private final List<GoalDetector> goalDetectors = new ArrayList<GoalDetector>();
+	// The beam directions and hits, reused by castBeams
+	private double[] beamX = new double[0], beamY = new double[0], hits = new double[0];
 }
@@ -0,0 +1,74 @@
+/**
+ * This software is a work of the U.S. Government. It is not subject to copyright
+ * protection and is in the public domain. It may be used as-is or modified and
+ * re-used. The author and the Air Force Institute of Technology would appreciate
+ * credit if this software or parts of it are used or modified for re-use.
+ */
+package edu.ucf.eplex.mazeNavigation.model;
+
+/**
+ * A fixed-length summary of a robot's trajectory, used as its behavior in the
+ * novelty search.  The final pose is kept exactly.  The end point descriptor
+ * is that pose itself; any longer descriptor is kept as primitive floats, so
+ * each descriptor costs a bounded number of bytes no matter how long the
+ * trial ran.  Descriptors are immutable.
+ */
+public final class TrajectoryDescriptor {
+
+    private final float[] values;
+    private final double x, y, theta;
+
+    /**
+     * Creates the end point descriptor, (x, y, theta) of the final pose.
+     *
+     * @param last The final pose of the trajectory
+     */
+    public TrajectoryDescriptor(Position last) {
+        values = null;
+        x = last.getX();
+        y = last.getY();
+        theta = last.getTheta();
+    }
+
+    /**
+     * @param values The descriptor, which is copied at float precision
+     * @param last The final pose of the trajectory
+     */
+    public TrajectoryDescriptor(double[] values, Position last) {
+        this.values = new float[values.length];
+        for (int i = 0; i < values.length; i++) {
+            this.values[i] = (float) values[i];
+        }
+        x = last.getX();
+        y = last.getY();
+        theta = last.getTheta();
+    }
+
+    /**
+     * @return The number of values in the descriptor.
+     */
+    public int size() {
+        return values == null ? 3 : values.length;
+    }
+
+    /**
+     * @return A new copy of the descriptor.
+     */
+    public double[] toArray() {
+        if (values == null) {
+            return new double[]{x, y, theta};
+        }
+        double[] result = new double[values.length];
+        for (int i = 0; i < values.length; i++) {
+            result[i] = values[i];
+        }
+        return result;
+    }
+
+    /**
+     * @return The final pose of the trajectory.
+     */
+    public Position getLast() {
+        return new Position(x, y, theta);
+    }
+}
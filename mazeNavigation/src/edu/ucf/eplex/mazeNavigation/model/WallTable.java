@@ -0,0 +1,408 @@
+/**
+ * This software is a work of the U.S. Government. It is not subject to copyright
+ * protection and is in the public domain. It may be used as-is or modified and
+ * re-used. The author and the Air Force Institute of Technology would appreciate
+ * credit if this software or parts of it are used or modified for re-use.
+ */
+package edu.ucf.eplex.mazeNavigation.model;
+
+import java.awt.geom.Line2D;
+import java.util.Collection;
+
+/**
+ * The walls of a maze as parallel arrays: wall <i>i</i> runs from
+ * (x1[i], y1[i]) to (x2[i], y2[i]), in direction (dx[i], dy[i]).  The table is
+ * built once when the maze is loaded and never changes, so it can be shared by
+ * every robot.
+ * <p>
+ * Mazes with at least {@value #GRID_MIN_WALLS} walls also get a uniform grid
+ * of square cells, each listing the walls whose bounding box (widened by a
+ * small margin against rounding) overlaps it.  Rays then walk the grid cell by
+ * cell and proximity queries visit only the cells near the point, but both
+ * test the walls exactly as a pass over every wall would, so the answers are
+ * identical.
+ */
+public final class WallTable {
+
+    WallTable(Collection<Line2D> walls) {
+        int n = walls.size();
+        x1 = new double[n];
+        y1 = new double[n];
+        x2 = new double[n];
+        y2 = new double[n];
+        dx = new double[n];
+        dy = new double[n];
+        int i = 0;
+        for (Line2D wall : walls) {
+            x1[i] = wall.getX1();
+            y1[i] = wall.getY1();
+            x2[i] = wall.getX2();
+            y2[i] = wall.getY2();
+            dx[i] = x2[i] - x1[i];
+            dy[i] = y2[i] - y1[i];
+            i++;
+        }
+        if (n < GRID_MIN_WALLS) {
+            minX = minY = cellSize = margin = 0;
+            columns = rows = 0;
+            cellStart = cellWalls = null;
+            return;
+        }
+
+        double loX = Double.POSITIVE_INFINITY, loY = Double.POSITIVE_INFINITY;
+        double hiX = Double.NEGATIVE_INFINITY, hiY = Double.NEGATIVE_INFINITY;
+        for (i = 0; i < n; i++) {
+            loX = Math.min(loX, Math.min(x1[i], x2[i]));
+            loY = Math.min(loY, Math.min(y1[i], y2[i]));
+            hiX = Math.max(hiX, Math.max(x1[i], x2[i]));
+            hiY = Math.max(hiY, Math.max(y1[i], y2[i]));
+        }
+        double width = hiX - loX, height = hiY - loY;
+        // About one cell per wall, but no more than n cells along either side
+        double size = Math.max(Math.sqrt(width * height / n), Math.max(width, height) / n);
+        cellSize = size > 0 ? size : 1;
+        margin = cellSize * MARGIN;
+        minX = loX - margin;
+        minY = loY - margin;
+        columns = (int) ((width + 2 * margin) / cellSize) + 1;
+        rows = (int) ((height + 2 * margin) / cellSize) + 1;
+
+        // Count the walls in each cell, then list them
+        cellStart = new int[columns * rows + 1];
+        for (i = 0; i < n; i++) {
+            for (int r = row(lowY(i)); r <= row(highY(i)); r++) {
+                for (int c = column(lowX(i)); c <= column(highX(i)); c++) {
+                    cellStart[r * columns + c + 1]++;
+                }
+            }
+        }
+        for (int cell = 0; cell < columns * rows; cell++) {
+            cellStart[cell + 1] += cellStart[cell];
+        }
+        cellWalls = new int[cellStart[columns * rows]];
+        int[] next = cellStart.clone();
+        for (i = 0; i < n; i++) {
+            for (int r = row(lowY(i)); r <= row(highY(i)); r++) {
+                for (int c = column(lowX(i)); c <= column(highX(i)); c++) {
+                    cellWalls[next[r * columns + c]++] = i;
+                }
+            }
+        }
+    }
+
+    public int size() {
+        return x1.length;
+    }
+
+    public double getX1(int i) {
+        return x1[i];
+    }
+
+    public double getY1(int i) {
+        return y1[i];
+    }
+
+    public double getX2(int i) {
+        return x2[i];
+    }
+
+    public double getY2(int i) {
+        return y2[i];
+    }
+
+    public double getDX(int i) {
+        return dx[i];
+    }
+
+    public double getDY(int i) {
+        return dy[i];
+    }
+
+    /**
+     * Casts a ray from (ox, oy) to (ox+rx, oy+ry).
+     *
+     * @return The fraction of the ray travelled before the nearest wall, or 1
+     * if it reaches its end without meeting one
+     */
+    public double cast(double ox, double oy, double rx, double ry) {
+        if (cellStart != null) {
+            return walk(ox, oy, rx, ry);
+        }
+        double nearest = 1;
+        for (int i = 0; i < x1.length; i++) {
+            nearest = Math.min(nearest, hit(i, ox, oy, rx, ry));
+        }
+        return nearest;
+    }
+
+    /**
+     * Casts several rays from (ox, oy) in a single pass over the walls; ray
+     * <i>j</i> runs to (ox+rx[j], oy+ry[j]).
+     *
+     * @param hits Set to the fraction of each ray travelled before the nearest
+     * wall, or 1 if it meets none
+     */
+    public void cast(double ox, double oy, double[] rx, double[] ry, double[] hits) {
+        if (cellStart != null) {
+            for (int j = 0; j < hits.length; j++) {
+                hits[j] = walk(ox, oy, rx[j], ry[j]);
+            }
+            return;
+        }
+        for (int j = 0; j < hits.length; j++) {
+            hits[j] = 1;
+        }
+        for (int i = 0; i < x1.length; i++) {
+            for (int j = 0; j < hits.length; j++) {
+                hits[j] = Math.min(hits[j], hit(i, ox, oy, rx[j], ry[j]));
+            }
+        }
+    }
+
+    /**
+     * @return <code>true</code> if any wall is nearer than <code>distance</code>
+     * to (x, y), measured as by {@link Line2D#ptSegDist(double, double, double, double, double, double)}
+     */
+    public boolean isWithin(double x, double y, double distance) {
+        if (cellStart == null) {
+            for (int i = 0; i < x1.length; i++) {
+                if (Line2D.ptSegDist(x1[i], y1[i], x2[i], y2[i], x, y) < distance) {
+                    return true;
+                }
+            }
+            return false;
+        }
+        int c0 = column(x - distance - margin), c1 = column(x + distance + margin);
+        int r0 = row(y - distance - margin), r1 = row(y + distance + margin);
+        for (int r = r0; r <= r1; r++) {
+            for (int c = c0; c <= c1; c++) {
+                int cell = r * columns + c;
+                for (int k = cellStart[cell]; k < cellStart[cell + 1]; k++) {
+                    int i = cellWalls[k];
+                    if (Line2D.ptSegDist(x1[i], y1[i], x2[i], y2[i], x, y) < distance) {
+                        return true;
+                    }
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * With a grid, the cells are searched in square rings around the point's
+     * cell, stopping once the nearest wall found is no farther than the edge
+     * of the searched square: any wall not yet tested lies beyond it.
+     *
+     * @return The distance from (x, y) to the nearest wall, or infinity if
+     * there are no walls
+     */
+    public double distance(double x, double y) {
+        double nearest = Double.POSITIVE_INFINITY;
+        if (cellStart == null) {
+            for (int i = 0; i < x1.length; i++) {
+                nearest = Math.min(nearest, Line2D.ptSegDist(x1[i], y1[i], x2[i], y2[i], x, y));
+            }
+            return nearest;
+        }
+        int c = column(x), r = row(y);
+        for (int ring = 0; ; ring++) {
+            int c0 = c - ring, c1 = c + ring, r0 = r - ring, r1 = r + ring;
+            for (int rr = Math.max(r0, 0); rr <= Math.min(r1, rows - 1); rr++) {
+                if (rr == r0 || rr == r1) {
+                    for (int cc = Math.max(c0, 0); cc <= Math.min(c1, columns - 1); cc++) {
+                        nearest = nearest(rr * columns + cc, x, y, nearest);
+                    }
+                } else {
+                    if (c0 >= 0) {
+                        nearest = nearest(rr * columns + c0, x, y, nearest);
+                    }
+                    if (c1 < columns) {
+                        nearest = nearest(rr * columns + c1, x, y, nearest);
+                    }
+                }
+            }
+            // The distance from the point to the edge of the searched square;
+            // no wall lies beyond an edge that is past the end of the grid
+            double clear = Double.POSITIVE_INFINITY;
+            if (c0 > 0) {
+                clear = Math.min(clear, x - (minX + c0 * cellSize));
+            }
+            if (c1 < columns - 1) {
+                clear = Math.min(clear, minX + (c1 + 1) * cellSize - x);
+            }
+            if (r0 > 0) {
+                clear = Math.min(clear, y - (minY + r0 * cellSize));
+            }
+            if (r1 < rows - 1) {
+                clear = Math.min(clear, minY + (r1 + 1) * cellSize - y);
+            }
+            if (nearest <= clear) {
+                return nearest;
+            }
+        }
+    }
+
+    /**
+     * Estimates the cost of {@link #isWithin(double, double, double)}.
+     *
+     * @param distance The distance tested for
+     * @return About how many walls the test compares the point with, when
+     * none is near enough to end it early
+     */
+    public double getWallsTested(double distance) {
+        if (cellStart == null) {
+            return x1.length;
+        }
+        double span = (2 * (distance + margin)) / cellSize + 1;
+        double cells = Math.min(span, columns) * Math.min(span, rows);
+        return cells * cellWalls.length / (columns * rows);
+    }
+
+    /**
+     * @return <code>true</code> if the walls are indexed by a grid
+     */
+    public boolean hasGrid() {
+        return cellStart != null;
+    }
+
+    /**
+     * Casts a ray through the grid, visiting its cells in order along the ray
+     * (Amanatides and Woo's traversal) and stopping once the nearest hit found
+     * lies clearly before the far side of the current cell.
+     */
+    private double walk(double ox, double oy, double rx, double ry) {
+        double length = Math.sqrt(rx * rx + ry * ry);
+        if (length == 0) {
+            return 1;
+        }
+        // Clip the ray to the grid
+        double maxX = minX + columns * cellSize, maxY = minY + rows * cellSize;
+        double enter = 0, leave = 1;
+        if (rx == 0) {
+            if (ox < minX || ox > maxX) {
+                return 1;
+            }
+        } else {
+            double ta = (minX - ox) / rx, tb = (maxX - ox) / rx;
+            enter = Math.max(enter, Math.min(ta, tb));
+            leave = Math.min(leave, Math.max(ta, tb));
+        }
+        if (ry == 0) {
+            if (oy < minY || oy > maxY) {
+                return 1;
+            }
+        } else {
+            double ta = (minY - oy) / ry, tb = (maxY - oy) / ry;
+            enter = Math.max(enter, Math.min(ta, tb));
+            leave = Math.min(leave, Math.max(ta, tb));
+        }
+        if (enter > leave) {
+            return 1;
+        }
+
+        int c = column(ox + enter * rx), r = row(oy + enter * ry);
+        int stepC = rx > 0 ? 1 : -1, stepR = ry > 0 ? 1 : -1;
+        double nextX = rx == 0 ? Double.POSITIVE_INFINITY
+                : (minX + (rx > 0 ? c + 1 : c) * cellSize - ox) / rx;
+        double nextY = ry == 0 ? Double.POSITIVE_INFINITY
+                : (minY + (ry > 0 ? r + 1 : r) * cellSize - oy) / ry;
+        double deltaX = rx == 0 ? Double.POSITIVE_INFINITY : cellSize / Math.abs(rx);
+        double deltaY = ry == 0 ? Double.POSITIVE_INFINITY : cellSize / Math.abs(ry);
+        double slack = margin / length;
+
+        double nearest = 1;
+        while (true) {
+            int cell = r * columns + c;
+            for (int k = cellStart[cell]; k < cellStart[cell + 1]; k++) {
+                nearest = Math.min(nearest, hit(cellWalls[k], ox, oy, rx, ry));
+            }
+            double exit = Math.min(nextX, nextY);
+            if (nearest <= exit - slack || exit >= leave) {
+                return nearest;
+            }
+            if (nextX < nextY) {
+                c += stepC;
+                nextX += deltaX;
+                if (c < 0 || c >= columns) {
+                    return nearest;
+                }
+            } else {
+                r += stepR;
+                nextY += deltaY;
+                if (r < 0 || r >= rows) {
+                    return nearest;
+                }
+            }
+        }
+    }
+
+    /**
+     * @return The lesser of <code>nearest</code> and the distance from
+     * (x, y) to the walls listed in a cell
+     */
+    private double nearest(int cell, double x, double y, double nearest) {
+        for (int k = cellStart[cell]; k < cellStart[cell + 1]; k++) {
+            int i = cellWalls[k];
+            nearest = Math.min(nearest, Line2D.ptSegDist(x1[i], y1[i], x2[i], y2[i], x, y));
+        }
+        return nearest;
+    }
+
+    private double lowX(int i) {
+        return Math.min(x1[i], x2[i]) - margin;
+    }
+
+    private double highX(int i) {
+        return Math.max(x1[i], x2[i]) + margin;
+    }
+
+    private double lowY(int i) {
+        return Math.min(y1[i], y2[i]) - margin;
+    }
+
+    private double highY(int i) {
+        return Math.max(y1[i], y2[i]) + margin;
+    }
+
+    private int column(double x) {
+        return Math.min(Math.max((int) Math.floor((x - minX) / cellSize), 0), columns - 1);
+    }
+
+    private int row(double y) {
+        return Math.min(Math.max((int) Math.floor((y - minY) / cellSize), 0), rows - 1);
+    }
+
+    /**
+     * Solves o + t*r = p + u*s, where p and s are the start and direction of
+     * wall <i>i</i>.  A ray parallel to the wall never hits it.
+     *
+     * @return t, if the ray and wall cross (t and u both in [0, 1]); otherwise
+     * infinity
+     */
+    double hit(int i, double ox, double oy, double rx, double ry) {
+        double sx = dx[i], sy = dy[i];
+        double denom = rx * sy - ry * sx;
+        if (denom == 0) {
+            return Double.POSITIVE_INFINITY;
+        }
+        double qx = x1[i] - ox, qy = y1[i] - oy;
+        double t = (qx * sy - qy * sx) / denom;
+        double u = (qx * ry - qy * rx) / denom;
+        if (t >= 0 && t <= 1 && u >= 0 && u <= 1) {
+            return t;
+        }
+        return Double.POSITIVE_INFINITY;
+    }
+
+    final double[] x1, y1, x2, y2, dx, dy;
+    // The grid: cell (r, c) lists cellWalls[cellStart[r*columns+c]] up to the next cell's start
+    private final double minX, minY, cellSize, margin;
+    private final int columns, rows;
+    private final int[] cellStart;
+    private final int[] cellWalls;
+
+    /** The fewest walls for which a grid is built */
+    public static final int GRID_MIN_WALLS = 32;
+    /** The widening of each wall's box, as a fraction of the cell size */
+    private static final double MARGIN = 1e-6;
+}
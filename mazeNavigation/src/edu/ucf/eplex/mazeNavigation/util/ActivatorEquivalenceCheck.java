@@ -0,0 +1,228 @@
+/**
+ * This software is a work of the U.S. Government. It is not subject to copyright
+ * protection and is in the public domain. It may be used as-is or modified and
+ * re-used. The author and the Air Force Institute of Technology would appreciate
+ * credit if this software or parts of it are used or modified for re-use.
+ */
+package edu.ucf.eplex.mazeNavigation.util;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import com.anji.integration.AnjiActivator;
+import com.anji.integration.AnjiNetTranscriber;
+import com.anji.neat.NeatConfiguration;
+import com.anji.nn.RecurrencyPolicy;
+import com.anji.util.Properties;
+import org.jgap.BehaviorVector;
+import org.jgap.Chromosome;
+import org.jgap.ChromosomeMaterial;
+import org.jgap.EvaluationFunction;
+import org.jgap.MutationOperator;
+
+import edu.ucf.eplex.naiecFramework.ann.CompiledActivator;
+
+/**
+ * Checks that a {@link CompiledActivator} gives exactly the outputs of the
+ * ANJI network built from the same chromosome.  Random genomes are grown from
+ * the initial topology by the configuration's own mutation operators, under
+ * each recurrency policy: <code>disallowed</code> gives feed-forward networks,
+ * <code>best_guess</code> and <code>lazy</code> recurrent ones.  Each genome
+ * is compiled and transcribed for 1 to {@value #MAX_CYCLES} activation
+ * cycles (property <code>recurrent.cycles</code>), and both networks are run
+ * through the same random inputs, including saturating ones, over several
+ * trials with a reset in between.  Any difference is printed, and the exit
+ * status is 1 if there was one.
+ * <p>
+ * Usage: <code>ActivatorEquivalenceCheck [properties file] [seed]</code>
+ */
+public class ActivatorEquivalenceCheck {
+
+    public static void main(String[] args) throws Exception {
+        String file = args.length > 0 ? args[0] : "./properties/hard.maze.novelty.properties";
+        long seed = args.length > 1 ? Long.parseLong(args[1]) : SEED;
+
+        int mismatches = 0;
+        for (String policyName : POLICIES) {
+            Properties props = loadProperties(file, policyName, seed);
+            NeatConfiguration config = new NeatConfiguration(props);
+            config.setEvaluationFunction(new UnusedEvaluation());
+            RecurrencyPolicy policy = RecurrencyPolicy.load(props);
+            Random rand = new Random(seed);
+
+            List<ChromosomeMaterial> materials = new ArrayList<ChromosomeMaterial>();
+            for (int i = 0; i < GENOMES; i++) {
+                materials.add(ChromosomeMaterial.randomInitialChromosomeMaterial(config));
+            }
+            int networks = 0, recurrent = 0, activations = 0, policyMismatches = 0;
+            for (int round = 0; round <= MUTATION_ROUNDS; round++) {
+                if (round > 0) {
+                    for (MutationOperator operator : config.getMutationOperators()) {
+                        operator.mutate(config, materials);
+                    }
+                }
+                for (ChromosomeMaterial material : materials) {
+                    Chromosome chrom = new Chromosome(material.clone(null), config.nextChromosomeId());
+                    for (int cycles = 1; cycles <= MAX_CYCLES; cycles++) {
+                        AnjiActivator expected = new AnjiActivator(new AnjiNetTranscriber(policy).newAnjiNet(chrom), cycles);
+                        CompiledActivator actual = CompiledActivator.compile(chrom, policy, cycles);
+                        networks++;
+                        if (expected.isRecurrent()) {
+                            recurrent++;
+                        }
+                        if (expected.getConnectionCount() != actual.getConnectionCount()
+                                || expected.getInputDimension() != actual.getInputDimension()
+                                || expected.getOutputDimension() != actual.getOutputDimension()) {
+                            report(chrom, cycles, "shape", expected.getConnectionCount() + " connections",
+                                    actual.getConnectionCount() + " connections", policyMismatches++);
+                            continue;
+                        }
+                        for (int trial = 0; trial < TRIALS; trial++) {
+                            expected.reset();
+                            actual.reset();
+                            for (int step = 0; step < STEPS; step++) {
+                                double[] stimuli = randomStimuli(rand, expected.getInputDimension(), step);
+                                double[] want = expected.next(stimuli);
+                                double[] got = actual.next(stimuli);
+                                activations++;
+                                if (!Arrays.equals(want, got)) {
+                                    report(chrom, cycles, "trial " + trial + " step " + step,
+                                            Arrays.toString(want), Arrays.toString(got), policyMismatches++);
+                                }
+                            }
+                        }
+                    }
+                }
+            }
+            System.out.println(String.format("%-10s %6d networks (%d recurrent), %9d activations, %d mismatches",
+                    policyName, networks, recurrent, activations, policyMismatches));
+            mismatches += policyMismatches;
+        }
+        System.exit(mismatches == 0 ? 0 : 1);
+    }
+
+    /**
+     * Loads the properties, with the recurrency policy and random seed set and
+     * the ID files kept in a temporary directory, so a run leaves no state.
+     */
+    static Properties loadProperties(String file, String policy, long seed) throws IOException {
+        Properties props = new Properties();
+        InputStream in = new FileInputStream(file);
+        try {
+            props.load(in);
+        } finally {
+            in.close();
+        }
+        File dir = File.createTempFile("equivalence", "");
+        dir.delete();
+        dir.mkdir();
+        // Files marked for deletion are deleted in reverse order, so the
+        // directory is marked before the files written into it
+        dir.deleteOnExit();
+        props.setProperty("persistence.base.dir", dir.getPath());
+        props.setProperty("id.file", tempFile(dir, "id.xml").getPath());
+        props.setProperty("neat.id.file", tempFile(dir, "neatid.xml").getPath());
+        props.setProperty("random.seed", Long.toString(seed));
+        props.setProperty(RecurrencyPolicy.KEY, policy);
+        // Grow structure faster than evolution does, to reach larger networks
+        props.setProperty("add.neuron.mutation.rate", "0.3");
+        props.setProperty("add.connection.mutation.rate", "0.6");
+        return props;
+    }
+
+    private static File tempFile(File dir, String name) {
+        File file = new File(dir, name);
+        file.deleteOnExit();
+        return file;
+    }
+
+    /**
+     * @return Gaussian inputs, every seventh step scaled to saturate the
+     * activation functions, with an occasional exact zero
+     */
+    private static double[] randomStimuli(Random rand, int size, int step) {
+        double scale = step % 7 == 0 ? 1e3 : 1;
+        double[] stimuli = new double[size];
+        for (int i = 0; i < size; i++) {
+            stimuli[i] = rand.nextInt(10) == 0 ? 0 : rand.nextGaussian() * scale;
+        }
+        return stimuli;
+    }
+
+    private static void report(Chromosome chrom, int cycles, String where, String want, String got, int count) {
+        if (count < MAX_REPORTS) {
+            System.out.println("chromosome " + chrom.getId() + ", " + cycles + " cycles, " + where
+                    + ": ANJI " + want + ", compiled " + got);
+        }
+    }
+
+    /**
+     * A configuration makes no chromosomes without an evaluation function, but
+     * none is evaluated here.
+     */
+    static final class UnusedEvaluation implements EvaluationFunction {
+
+        @Override
+        public void evaluateFitness(Chromosome subject) {
+        }
+
+        @Override
+        public void evaluateFitness(List<Chromosome> subjects) {
+        }
+
+        @Override
+        public int getMaxFitnessValue() {
+            return 1;
+        }
+
+        @Override
+        public void evaluateNovelty(List<Chromosome> subjects) {
+        }
+
+        @Override
+        public double getNoveltyThreshold() {
+            return 0;
+        }
+
+        @Override
+        public void setNoveltyThreshold(double threshold) {
+        }
+
+        @Override
+        public int getNoveltyArchiveSize() {
+            return 0;
+        }
+
+        @Override
+        public void evaluate(List<Chromosome> subjects) {
+        }
+
+        @Override
+        public void evaluate(Chromosome subject) {
+        }
+
+        @Override
+        public Map<Chromosome, BehaviorVector> getAllPointsVisited() {
+            return Collections.emptyMap();
+        }
+
+        private static final long serialVersionUID = 1L;
+    }
+
+    private static final String[] POLICIES = {"disallowed", "best_guess", "lazy"};
+    private static final int GENOMES = 40;
+    private static final int MUTATION_ROUNDS = 30;
+    private static final int MAX_CYCLES = 3;
+    private static final int TRIALS = 2;
+    private static final int STEPS = 50;
+    private static final int MAX_REPORTS = 10;
+    private static final long SEED = 1012;
+}
@@ -0,0 +1,160 @@
+/**
+ * This software is a work of the U.S. Government. It is not subject to copyright
+ * protection and is in the public domain. It may be used as-is or modified and
+ * re-used. The author and the Air Force Institute of Technology would appreciate
+ * credit if this software or parts of it are used or modified for re-use.
+ */
+package edu.ucf.eplex.mazeNavigation.util;
+
+import java.awt.Dimension;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import com.anji.neat.NeatConfiguration;
+import com.anji.util.Properties;
+import org.jgap.Chromosome;
+import org.jgap.ChromosomeMaterial;
+import org.jgap.MutationOperator;
+
+import edu.ucf.eplex.mazeNavigation.behaviorFramework.ANN_Behavior;
+import edu.ucf.eplex.mazeNavigation.behaviorFramework.Behavior;
+import edu.ucf.eplex.mazeNavigation.model.Maze;
+import edu.ucf.eplex.mazeNavigation.model.Robot;
+import edu.ucf.eplex.naiecFramework.ann.ActivatorFactory;
+import edu.ucf.eplex.naiecFramework.domain.Candidate;
+
+/**
+ * Counts the bytes the simulation thread allocates per robot step, i.e. per
+ * call of <code>SensorArray.sense</code> followed by
+ * {@link ANN_Behavior#genAction}, using the thread allocation counter of
+ * {@link com.sun.management.ThreadMXBean}.  Random genomes are grown by the
+ * configuration's mutation operators and built as each <code>ann.type</code>;
+ * the robot is placed at random poses in the maze.  After a warm-up, so that
+ * the JIT has compiled the step, the steady state must allocate nothing for
+ * the <code>compiled</code> and <code>generated</code> networks.  The
+ * <code>anji</code> networks are reported too, but they allocate their own
+ * output array on every activation.  The exit status is 1 if a network that
+ * should not allocate did.
+ * <p>
+ * Usage: <code>AllocationCheck [properties file] [hard.map|medium.map] [seed]</code>
+ */
+public class AllocationCheck {
+
+    public static void main(String[] args) throws Exception {
+        String file = args.length > 0 ? args[0] : "./properties/hard.maze.novelty.properties";
+        String mapType = args.length > 1 ? args[1] : "hard.map";
+        long seed = args.length > 2 ? Long.parseLong(args[2]) : SEED;
+
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        if (!threads.isThreadAllocatedMemorySupported()) {
+            System.out.println("Thread allocation counting is not supported by this JVM");
+            System.exit(1);
+        }
+        threads.setThreadAllocatedMemoryEnabled(true);
+        long thread = Thread.currentThread().getId();
+
+        Maze map = Maze.getMap(mapType);
+        double[][] poses = randomPoses(new Random(seed), map.getSize());
+
+        boolean allocated = false;
+        for (String type : TYPES) {
+            Properties props = ActivatorEquivalenceCheck.loadProperties(file, "best_guess", seed);
+            props.setProperty("ann.type", type);
+            props.setProperty("ann.generated.min.neurons", "0");
+            NeatConfiguration config = new NeatConfiguration(props);
+            config.setEvaluationFunction(new ActivatorEquivalenceCheck.UnusedEvaluation());
+            ActivatorFactory phenotypes = new ActivatorFactory(config, props);
+
+            long maxBytes = 0, totalBytes = 0;
+            for (Chromosome chrom : randomChromosomes(config)) {
+                PosedRobot robot = new PosedRobot(map);
+                Behavior behavior = new ANN_Behavior(new Candidate(chrom, phenotypes));
+
+                run(robot, behavior, poses, WARMUP_STEPS);
+                // The counter's own overhead, subtracted from the measurement
+                long start = threads.getThreadAllocatedBytes(thread);
+                long overhead = threads.getThreadAllocatedBytes(thread) - start;
+                long before = threads.getThreadAllocatedBytes(thread);
+                run(robot, behavior, poses, MEASURED_STEPS);
+                long bytes = threads.getThreadAllocatedBytes(thread) - before - overhead;
+
+                maxBytes = Math.max(maxBytes, bytes);
+                totalBytes += bytes;
+            }
+            boolean expectsNone = !type.equals("anji");
+            System.out.println(String.format("%-10s %3d networks, %8.2f bytes per step (worst network %d bytes in %d steps)%s",
+                    type, GENOMES, (double) totalBytes / (GENOMES * MEASURED_STEPS), maxBytes, MEASURED_STEPS,
+                    expectsNone ? "" : ", ANJI's output arrays"));
+            if (expectsNone && maxBytes > 0) {
+                allocated = true;
+            }
+        }
+        System.exit(allocated ? 1 : 0);
+    }
+
+    /**
+     * Senses the maze from the next pose and generates the behavior's action,
+     * as the environment does each timestep.
+     */
+    private static void run(PosedRobot robot, Behavior behavior, double[][] poses, int steps) {
+        for (int step = 0; step < steps; step++) {
+            double[] pose = poses[step % poses.length];
+            robot.sense(pose[0], pose[1], pose[2]);
+            behavior.genAction(robot.getState());
+        }
+    }
+
+    private static double[][] randomPoses(Random rand, Dimension size) {
+        double[][] poses = new double[POSES][];
+        for (int i = 0; i < POSES; i++) {
+            poses[i] = new double[]{rand.nextDouble() * size.width, rand.nextDouble() * size.height,
+                rand.nextDouble() * 2 * Math.PI};
+        }
+        return poses;
+    }
+
+    /**
+     * @return Chromosomes grown from the initial topology, one taken after
+     * each round of mutation so both small and large networks are included
+     */
+    private static List<Chromosome> randomChromosomes(NeatConfiguration config) throws Exception {
+        List<ChromosomeMaterial> materials = new ArrayList<ChromosomeMaterial>();
+        for (int i = 0; i < GENOMES; i++) {
+            materials.add(ChromosomeMaterial.randomInitialChromosomeMaterial(config));
+        }
+        List<Chromosome> chromosomes = new ArrayList<Chromosome>();
+        for (int i = 0; i < GENOMES; i++) {
+            for (MutationOperator operator : config.getMutationOperators()) {
+                operator.mutate(config, materials);
+            }
+            chromosomes.add(new Chromosome(materials.get(i).clone(null), config.nextChromosomeId()));
+        }
+        return chromosomes;
+    }
+
+    /**
+     * A robot that can be posed without replacing its position, so that
+     * sensing from a pose allocates only what the sensors do.
+     */
+    private static final class PosedRobot extends Robot {
+
+        PosedRobot(Maze map) {
+            super(map);
+            setPosition(map.getStart());
+        }
+
+        void sense(double x, double y, double theta) {
+            myPose.setLocation(x, y, theta);
+            updateSensors();
+        }
+    }
+
+    private static final String[] TYPES = {"compiled", "generated", "anji"};
+    private static final int GENOMES = 20;
+    private static final int POSES = 1000;
+    private static final int WARMUP_STEPS = 50000;
+    private static final int MEASURED_STEPS = 10000;
+    private static final long SEED = 1015;
+}
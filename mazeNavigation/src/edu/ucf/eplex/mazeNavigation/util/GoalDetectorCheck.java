@@ -0,0 +1,143 @@
+/**
+ * This software is a work of the U.S. Government. It is not subject to copyright
+ * protection and is in the public domain. It may be used as-is or modified and
+ * re-used. The author and the Air Force Institute of Technology would appreciate
+ * credit if this software or parts of it are used or modified for re-use.
+ */
+package edu.ucf.eplex.mazeNavigation.util;
+
+import java.awt.geom.Arc2D;
+import java.awt.geom.Line2D;
+import java.awt.geom.Point2D;
+import java.util.List;
+import java.util.Random;
+
+import edu.ucf.eplex.mazeNavigation.model.GoalDetector;
+import edu.ucf.eplex.mazeNavigation.model.Maze;
+import edu.ucf.eplex.mazeNavigation.model.Robot;
+
+/**
+ * Checks that the goal detectors, which decide most poses from the goal's
+ * bearing, agree with the original test: whether the line from the robot to
+ * the goal crosses the chord of the detector's {@link Arc2D}.  A robot with the
+ * usual four detectors and {@value #EXTRA_DETECTORS} more is placed around
+ * the maze's goal.  The extra detectors have random centerlines; their fields
+ * of view are Pi, just below it, 1.5 Pi, a few narrow ones and random ones
+ * below Pi.  The poses are drawn from several families:
+ * <ul>
+ * <li>uniform over a wide square around the goal,</li>
+ * <li>with the goal exactly on a sector edge, and 1e-15 to 1e-6 radians
+ * either side of it,</li>
+ * <li>with the goal within 1.5 units, including exactly 1 unit and at the
+ * robot itself, and</li>
+ * <li>along the axes, where the bearing is a multiple of Pi/2.</li>
+ * </ul>
+ * Any difference is printed, and the exit status is 1 if there was one.
+ * <p>
+ * Usage: <code>GoalDetectorCheck [hard.map|medium.map] [poses] [seed]</code>
+ */
+public class GoalDetectorCheck {
+
+    public static void main(String[] args) {
+        String mapType = args.length > 0 ? args[0] : "hard.map";
+        int poses = args.length > 1 ? Integer.parseInt(args[1]) : POSES;
+        long seed = args.length > 2 ? Long.parseLong(args[2]) : SEED;
+
+        Random rand = new Random(seed);
+        Maze map = Maze.getMap(mapType);
+        Robot robot = new Robot(map);
+        double[] fieldOfView = {Math.PI, Math.nextAfter(Math.PI, 0), Math.PI - 1e-9, Math.PI - 1e-6, 1.5 * Math.PI,
+            Math.PI / 2, Math.PI / 3, 0.1, 1e-3};
+        for (int i = 0; i < EXTRA_DETECTORS; i++) {
+            double width = i < fieldOfView.length ? fieldOfView[i] : (1 - rand.nextDouble()) * Math.PI;
+            robot.getSensorArray().addGoalDetector(Util.normalize(rand.nextDouble() * 2 * Math.PI), width);
+        }
+        List<GoalDetector> detectors = robot.getSensorArray().getGoalDetectors();
+        Point2D goal = map.getGoal();
+
+        // The directions of the arcs' ends from a robot heading along the x axis
+        robot.setPosition(goal, 0);
+        double[] edges = new double[2 * detectors.size()];
+        for (int i = 0; i < detectors.size(); i++) {
+            Arc2D arc = detectors.get(i).getArc();
+            edges[2 * i] = -Math.toRadians(arc.getAngleStart());
+            edges[2 * i + 1] = -Math.toRadians(arc.getAngleStart() + arc.getAngleExtent());
+        }
+
+        long tests = 0, mismatches = 0;
+        for (int family = 0; family < FAMILIES.length; family++) {
+            long familyMismatches = 0;
+            for (int p = 0; p < poses; p++) {
+                double[] pose = randomPose(family, rand, edges);
+                robot.setPosition(goal.getX() - pose[0], goal.getY() - pose[1], pose[2]);
+                for (int i = 0; i < detectors.size(); i++) {
+                    GoalDetector detector = detectors.get(i);
+                    tests++;
+                    boolean expected = crossesChord(detector.getArc(), robot.getPosition(), goal);
+                    if (detector.isActive() != expected) {
+                        if (mismatches++ < MAX_REPORTS) {
+                            System.out.println(FAMILIES[family] + ": detector " + i + ", robot " + robot.getPosition().getX() + ", "
+                                    + robot.getPosition().getY() + " heading " + pose[2] + ": arc "
+                                    + expected + ", bearing " + detector.isActive());
+                        }
+                        familyMismatches++;
+                    }
+                }
+            }
+            System.out.println(String.format("%-8s %9d poses, %d mismatches", FAMILIES[family], poses, familyMismatches));
+        }
+        System.out.println(tests + " detector tests, " + mismatches + " mismatches");
+        System.exit(mismatches == 0 ? 0 : 1);
+    }
+
+    /**
+     * The original test: the line from the robot to the goal crossing, or
+     * touching, the chord between the ends of the arc.
+     */
+    private static boolean crossesChord(Arc2D arc, Point2D robot, Point2D goal) {
+        Line2D chord = new Line2D.Double(arc.getStartPoint(), arc.getEndPoint());
+        return new Line2D.Double(robot, goal).intersectsLine(chord);
+    }
+
+    /**
+     * @return The goal's offset from the robot and the robot's heading
+     */
+    private static double[] randomPose(int family, Random rand, double[] edges) {
+        double heading = Util.normalize(rand.nextDouble() * 2 * Math.PI);
+        double direction, distance;
+        switch (family) {
+            case EDGE:
+                direction = heading + edges[rand.nextInt(edges.length)];
+                int nudge = rand.nextInt(NUDGES.length + 1);
+                if (nudge < NUDGES.length) {
+                    direction += rand.nextBoolean() ? NUDGES[nudge] : -NUDGES[nudge];
+                }
+                distance = rand.nextInt(4) == 0 ? rand.nextDouble() * 1.5 : 1 + rand.nextDouble() * 300;
+                break;
+            case NEAR:
+                direction = rand.nextDouble() * 2 * Math.PI;
+                int kind = rand.nextInt(8);
+                distance = kind == 0 ? 0 : kind == 1 ? 1 : kind == 2 ? Math.nextUp(1.0)
+                        : kind == 3 ? Math.nextAfter(1.0, 0) : rand.nextDouble() * 1.5;
+                break;
+            case AXES:
+                direction = rand.nextInt(4) * Math.PI / 2;
+                heading = rand.nextInt(8) * Math.PI / 4;
+                distance = rand.nextInt(3) == 0 ? rand.nextDouble() * 1.5 : rand.nextDouble() * 300;
+                break;
+            default:
+                direction = rand.nextDouble() * 2 * Math.PI;
+                distance = rand.nextDouble() * 300;
+                break;
+        }
+        return new double[]{distance * Math.cos(direction), distance * Math.sin(direction), heading};
+    }
+
+    private static final String[] FAMILIES = {"uniform", "edge", "near", "axes"};
+    private static final int EDGE = 1, NEAR = 2, AXES = 3;
+    private static final double[] NUDGES = {1e-15, 1e-12, 1e-9, 1e-7, 1e-6};
+    private static final int EXTRA_DETECTORS = 12;
+    private static final int POSES = 500000;
+    private static final int MAX_REPORTS = 10;
+    private static final long SEED = 1020;
+}
@@ -265,10 +265,10 @@ public class MazeRenderingTool extends RenderingTool{
         double color = 200.0;
         double step = color / thePath.size();
 
-        for (Position pt : thePath) {
+        for (int i = 0; i < thePath.size(); i++) {
             g2.setColor(new Color((int) color, (int) color, (int) color));
-            x = scale(pt.getX() - 4);
-            y = scale(pt.getY() - 4);
+            x = scale(thePath.getX(i) - 4);
+            y = scale(thePath.getY(i) - 4);
             dx = scale(8);
             dy = scale(8);
             g2.fill(new Ellipse2D.Double(x, y, dx, dy));
@@ -0,0 +1,105 @@
+/**
+ * This software is a work of the U.S. Government. It is not subject to copyright
+ * protection and is in the public domain. It may be used as-is or modified and
+ * re-used. The author and the Air Force Institute of Technology would appreciate
+ * credit if this software or parts of it are used or modified for re-use.
+ */
+package edu.ucf.eplex.mazeNavigation.util;
+
+import java.awt.Dimension;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import edu.ucf.eplex.mazeNavigation.MazeDomainNoveltyMetric;
+import edu.ucf.eplex.mazeNavigation.model.Maze;
+import edu.ucf.eplex.naiecFramework.novelty.BehaviorIndex;
+import edu.ucf.eplex.naiecFramework.novelty.FlatBehaviorIndex;
+import edu.ucf.eplex.naiecFramework.novelty.GridBehaviorIndex;
+import edu.ucf.eplex.naiecFramework.novelty.KDTreeBehaviorIndex;
+
+/**
+ * Compares the novelty behavior indexes on maze-shaped behaviors, i.e. an
+ * (x, y, theta) end point plus the candidate ID dimension, at archive sizes of
+ * 1k, 10k and 100k.  Each index is filled, queried for the k nearest neighbors
+ * of random end points, and then churned by evicting the oldest behaviors and
+ * inserting new ones, as the novelty metric does each generation.
+ * <p>
+ * Usage: <code>NoveltyIndexBenchmark [hard.map|medium.map] [k]</code>
+ */
+public class NoveltyIndexBenchmark {
+
+    public static void main(String[] args) {
+        String mapType = args.length > 0 ? args[0] : "hard.map";
+        int k = args.length > 1 ? Integer.parseInt(args[1]) : 15;
+        Dimension size = Maze.getMap(mapType).getSize();
+
+        System.out.println("Maze " + mapType + " " + size.width + "x" + size.height + ", k == " + k);
+        System.out.println(String.format("%-8s %8s %12s %12s %12s", "index", "size", "insert(uS)", "query(uS)", "churn(uS)"));
+        for (int archiveSize : ARCHIVE_SIZES) {
+            double cellSize = MazeDomainNoveltyMetric.getGridCellSize(size, k, archiveSize);
+            double[] lower = {0, 0};
+            double[] upper = {size.getWidth(), size.getHeight()};
+
+            // Warm up each index so the JIT compiles the hot loops before reporting
+            for (int pass = 0; pass < WARMUP_PASSES + 1; pass++) {
+                boolean report = pass == WARMUP_PASSES;
+                run("kdtree", new KDTreeBehaviorIndex<Integer>(DIMENSIONS, 0.5), archiveSize, k, size, report);
+                run("flat", new FlatBehaviorIndex<Integer>(DIMENSIONS), archiveSize, k, size, report);
+                run("grid", new GridBehaviorIndex<Integer>(DIMENSIONS, lower, upper, cellSize), archiveSize, k, size, report);
+            }
+        }
+    }
+
+    private static void run(String name, BehaviorIndex<Integer> index, int archiveSize, int k, Dimension size, boolean report) {
+        Random rand = new Random(SEED);
+        List<double[]> locations = new ArrayList<double[]>();
+        for (int i = 0; i < archiveSize + CHURN; i++) {
+            locations.add(randomBehavior(rand, size));
+        }
+
+        long start = System.nanoTime();
+        for (int i = 0; i < archiveSize; i++) {
+            index.insert(i, locations.get(i));
+        }
+        long insert = System.nanoTime() - start;
+
+        long checksum = 0;
+        start = System.nanoTime();
+        for (int q = 0; q < QUERIES; q++) {
+            for (Integer neighbor : index.nearest(randomBehavior(rand, size), k)) {
+                checksum += neighbor;
+            }
+        }
+        long query = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        for (int i = 0; i < CHURN; i++) {
+            index.delete(i);
+            index.insert(archiveSize + i, locations.get(archiveSize + i));
+        }
+        long churn = System.nanoTime() - start;
+
+        if (report) {
+            System.out.println(String.format("%-8s %8d %12.3f %12.3f %12.3f   [checksum %d]", name, archiveSize,
+                    insert / 1000.0 / archiveSize, query / 1000.0 / QUERIES, churn / 1000.0 / CHURN, checksum));
+        }
+    }
+
+    private static double[] randomBehavior(Random rand, Dimension size) {
+        double[] location = {
+            rand.nextDouble() * size.getWidth(),
+            rand.nextDouble() * size.getHeight(),
+            (rand.nextDouble() * 2 - 1) * Math.PI,
+            rand.nextDouble()
+        };
+        return location;
+    }
+
+    private static final int[] ARCHIVE_SIZES = {1000, 10000, 100000};
+    private static final int DIMENSIONS = 4;
+    private static final int QUERIES = 10000;
+    private static final int CHURN = 1000;
+    private static final long SEED = 1009;
+    private static final int WARMUP_PASSES = 3;
+}
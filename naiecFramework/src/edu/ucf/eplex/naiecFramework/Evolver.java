@@ -40,9 +40,12 @@ import com.anji.run.Run;
 import com.anji.util.Properties;
 import com.anji.util.Reset;
 
+import edu.ucf.eplex.naiecFramework.ann.ActivatorFactory;
+import edu.ucf.eplex.naiecFramework.ann.NetworkClassGenerator;
 import edu.ucf.eplex.naiecFramework.domain.Candidate;
 import edu.ucf.eplex.naiecFramework.domain.EvaluationDomain;
 import edu.ucf.eplex.naiecFramework.domain.NaiecDomainProperties;
+import edu.ucf.eplex.naiecFramework.domain.NoveltyMetricStatistics;
 
 /**
  *
@@ -135,6 +138,7 @@ public class Evolver implements EvaluationFunction, PopulationListener {
     private boolean recordBehaviorSpace = DEFAULT_RECORD_BEHAVIOR_SPACE;
     private Dimension behaviorSpaceSize = null;
     private NeatConfiguration config = null;
+    private ActivatorFactory phenotypes = null;
     private Chromosome fitnessChamp = null;
     private Persistence db = null;
     private Genotype genotype = null;
@@ -207,6 +211,7 @@ public class Evolver implements EvaluationFunction, PopulationListener {
         } else {
             config = new NeatConfiguration(props);
         }
+        phenotypes = new ActivatorFactory(config, props);
 
         // peristence
         db = (Persistence) props.singletonObjectProperty(Persistence.PERSISTENCE_CLASS_KEY);
@@ -319,6 +324,17 @@ public class Evolver implements EvaluationFunction, PopulationListener {
             Date generationEndDate = Calendar.getInstance().getTime();
             long durationMillis = generationEndDate.getTime() - generationStartDate.getTime();
             logger.log(Level.INFO, "Generation {0}: end [{1} - {2}] [{3}]", new Object[]{generation, fmt.format(generationStartDate), fmt.format(generationEndDate), durationMillis});
+            NoveltyMetricStatistics noveltyStatistics = f_domain.getNoveltyStatistics();
+            if (noveltyStatistics != null && noveltyStatistics.getScoreCount() > 0) {
+                logger.log(Level.INFO, "Generation {0}: novelty {1}", new Object[]{generation, noveltyStatistics.getSummary()});
+            }
+            logger.log(Level.INFO, "Generation {0}: phenotypes [built == {1}] [reused == {2}]", new Object[]{generation,
+                Candidate.getPhenotypeBuildCount(), Candidate.getPhenotypeCacheHitCount()});
+            if (phenotypes.getGenerator() != null) {
+                NetworkClassGenerator generator = phenotypes.getGenerator();
+                logger.log(Level.INFO, "Generation {0}: network classes [generated == {1}] [reused == {2}] [too large == {3}]",
+                        new Object[]{generation, generator.getGeneratedCount(), generator.getReusedCount(), generator.getTooLargeCount()});
+            }
 
             // Wright out the behavior space image...
             if (recordBehaviorSpace) {
@@ -364,7 +380,7 @@ public class Evolver implements EvaluationFunction, PopulationListener {
      */
     private Candidate getCandidate(Chromosome chrom) {
         if (!candidates.containsKey(chrom)) {
-            candidates.put(chrom, new Candidate(chrom, config));
+            candidates.put(chrom, new Candidate(chrom, phenotypes));
         }
         return candidates.get(chrom);
     }
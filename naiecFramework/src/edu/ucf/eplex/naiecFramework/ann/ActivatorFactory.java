@@ -0,0 +1,110 @@
+/**
+ * This software is a work of the U.S. Government. It is not subject to copyright
+ * protection and is in the public domain. It may be used as-is or modified and
+ * re-used. The author and the Air Force Institute of Technology would appreciate
+ * credit if this software or parts of it are used or modified for re-use.
+ */
+package edu.ucf.eplex.naiecFramework.ann;
+
+import com.anji.hyperneat.HyperNeatConfiguration;
+import com.anji.integration.Activator;
+import com.anji.integration.TranscriberException;
+import com.anji.neat.NeatConfiguration;
+import com.anji.nn.RecurrencyPolicy;
+import com.anji.util.Properties;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.jgap.Chromosome;
+
+/**
+ * Builds the network for a chromosome.  The implementation is set by property
+ * <code>ann.type</code>; the values:
+ * <ul>
+ * <li><code>anji</code>, the configuration's own network (the default),</li>
+ * <li><code>compiled</code>, a {@link CompiledActivator} using the
+ * <code>recurrent</code> policy and <code>recurrent.cycles</code>, and</li>
+ * <li><code>generated</code>, a compiled network that runs a class generated
+ * for its topology by {@link NetworkClassGenerator} once it has at least
+ * <code>ann.generated.min.neurons</code> neurons</li>
+ * </ul>
+ * are currently supported.  HyperNEAT chromosomes describe a substrate rather
+ * than a network, so they are always built by the configuration.
+ */
+public class ActivatorFactory {
+
+    private final NeatConfiguration config;
+    private final String type;
+    private final RecurrencyPolicy policy;
+    private final int cycles;
+    private final int minGeneratedNeurons;
+    private final NetworkClassGenerator generator;
+
+    public ActivatorFactory(NeatConfiguration config, Properties props) {
+        this.config = config;
+        String aType = props.getProperty(TYPE_KEY, DEFAULT_TYPE);
+        if (!aType.equalsIgnoreCase(ANJI_TYPE) && !aType.equalsIgnoreCase(COMPILED_TYPE)
+                && !aType.equalsIgnoreCase(GENERATED_TYPE)) {
+            Logger.getLogger(ActivatorFactory.class.getName()).log(Level.WARNING,
+                    "Unknown {0} \"{1}\", using {2}", new Object[]{TYPE_KEY, aType, ANJI_TYPE});
+            aType = ANJI_TYPE;
+        }
+        if (config instanceof HyperNeatConfiguration) {
+            aType = ANJI_TYPE;
+        }
+        type = aType.toLowerCase();
+        RecurrencyPolicy aPolicy = RecurrencyPolicy.load(props);
+        policy = aPolicy == null ? RecurrencyPolicy.BEST_GUESS : aPolicy;
+        cycles = Math.max(props.getIntProperty(RECURRENT_CYCLES_KEY, DEFAULT_RECURRENT_CYCLES), 1);
+        minGeneratedNeurons = props.getIntProperty(GENERATED_MIN_NEURONS_KEY, DEFAULT_GENERATED_MIN_NEURONS);
+        generator = type.equals(GENERATED_TYPE)
+                ? new NetworkClassGenerator(props.getIntProperty(GENERATED_CACHE_SIZE_KEY, DEFAULT_GENERATED_CACHE_SIZE))
+                : null;
+    }
+
+    /**
+     * @param chrom A chromosome
+     * @return The chromosome's network, or <code>null</code> if it cannot be built
+     */
+    public Activator newActivator(Chromosome chrom) {
+        if (!type.equals(ANJI_TYPE)) {
+            try {
+                CompiledActivator net = CompiledActivator.compile(chrom, policy, cycles);
+                if (generator != null && net.getNeuronCount() >= minGeneratedNeurons) {
+                    generator.attach(net);
+                }
+                return net;
+            } catch (TranscriberException ex) {
+                Logger.getLogger(ActivatorFactory.class.getName()).log(Level.SEVERE, null, ex);
+                return null;
+            }
+        }
+        return config.createANN(chrom);
+    }
+
+    /**
+     * @return The network implementation in use.
+     */
+    public String getType() {
+        return type;
+    }
+
+    /**
+     * @return The class generator, or <code>null</code> unless the type is
+     * <code>generated</code>.
+     */
+    public NetworkClassGenerator getGenerator() {
+        return generator;
+    }
+
+    private static final String TYPE_KEY = "ann.type";
+    private static final String ANJI_TYPE = "anji";
+    private static final String COMPILED_TYPE = "compiled";
+    private static final String GENERATED_TYPE = "generated";
+    private static final String DEFAULT_TYPE = ANJI_TYPE;
+    private static final String RECURRENT_CYCLES_KEY = "recurrent.cycles";
+    private static final int DEFAULT_RECURRENT_CYCLES = 1;
+    private static final String GENERATED_MIN_NEURONS_KEY = "ann.generated.min.neurons";
+    private static final int DEFAULT_GENERATED_MIN_NEURONS = 16;
+    private static final String GENERATED_CACHE_SIZE_KEY = "ann.generated.cache.size";
+    private static final int DEFAULT_GENERATED_CACHE_SIZE = 256;
+}
@@ -0,0 +1,478 @@
+/**
+ * This software is a work of the U.S. Government. It is not subject to copyright
+ * protection and is in the public domain. It may be used as-is or modified and
+ * re-used. The author and the Air Force Institute of Technology would appreciate
+ * credit if this software or parts of it are used or modified for re-use.
+ */
+package edu.ucf.eplex.naiecFramework.ann;
+
+import com.anji.integration.Activator;
+import com.anji.nn.ActivationFunction;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Advances a batch of networks one timestep together.  The stimuli of all the
+ * networks are packed into one row-major matrix, one row per network, and the
+ * responses are unpacked from another.
+ * <p>
+ * {@link CompiledActivator}s with the same topology are grouped, and each
+ * group stores its weights, neuron values and recurrent values as dense
+ * matrices with one column per network.  A group is activated one neuron at a
+ * time across all its networks, so every inner loop runs over contiguous
+ * arrays, which the JIT unrolls and vectorizes.  The networks keep their own
+ * summation order, so each response is identical to the one the network
+ * would give alone.  Compiled networks whose topology is shared by fewer than
+ * four networks, and other activators, are stepped one at a time.
+ * <p>
+ * The batch copies the compiled networks when it is created and keeps their
+ * state itself, so activating the batch does not change them; other
+ * activators are used, and their state changed, in place.  Networks that are
+ * no longer needed can be dropped with {@link #retain(boolean[])}.  Instances
+ * are not thread safe.
+ */
+public class BatchActivator {
+
+    private int size;
+    private final int inputDimension;
+    private final int outputDimension;
+    private Group[] groups;
+    private CompiledActivator[] scalars;
+    private int[] scalarIndex;
+    private double[][] scalarInputs;
+    private final double[] scalarResponse;
+    private Activator[] singles;
+    private int[] singleIndex;
+
+    /**
+     * @param nets The networks, which must agree on their input and output
+     * dimensions
+     */
+    public BatchActivator(List<? extends Activator> nets) {
+        if (nets.isEmpty()) {
+            throw new IllegalArgumentException("empty batch");
+        }
+        size = nets.size();
+        inputDimension = nets.get(0).getInputDimension();
+        outputDimension = nets.get(0).getOutputDimension();
+
+        Map<TopologyKey, List<Integer>> members = new LinkedHashMap<TopologyKey, List<Integer>>();
+        List<Integer> others = new ArrayList<Integer>();
+        for (int i = 0; i < size; i++) {
+            Activator net = nets.get(i);
+            if (net.getInputDimension() != inputDimension || net.getOutputDimension() != outputDimension) {
+                throw new IllegalArgumentException("network " + i + " has " + net.getInputDimension() + " inputs and "
+                        + net.getOutputDimension() + " outputs, expected " + inputDimension + " and " + outputDimension);
+            }
+            if (net instanceof CompiledActivator) {
+                TopologyKey key = new TopologyKey(structure((CompiledActivator) net));
+                if (!members.containsKey(key)) {
+                    members.put(key, new ArrayList<Integer>());
+                }
+                members.get(key).add(i);
+            } else {
+                others.add(i);
+            }
+        }
+
+        // A topology with only a few networks is faster activated one network at a time
+        List<Group> groupList = new ArrayList<Group>();
+        List<Integer> alone = new ArrayList<Integer>();
+        for (List<Integer> group : members.values()) {
+            if (group.size() >= MIN_GROUP_SIZE) {
+                groupList.add(new Group(nets, group, inputDimension));
+            } else {
+                alone.addAll(group);
+            }
+        }
+        groups = groupList.toArray(new Group[groupList.size()]);
+        scalars = new CompiledActivator[alone.size()];
+        scalarIndex = new int[alone.size()];
+        scalarInputs = new double[alone.size()][inputDimension];
+        for (int s = 0; s < scalars.length; s++) {
+            scalarIndex[s] = alone.get(s);
+            scalars[s] = ((CompiledActivator) nets.get(scalarIndex[s])).copy();
+        }
+        scalarResponse = new double[outputDimension];
+        singles = new Activator[others.size()];
+        singleIndex = new int[others.size()];
+        for (int s = 0; s < singles.length; s++) {
+            singleIndex[s] = others.get(s);
+            singles[s] = nets.get(singleIndex[s]);
+        }
+        reset();
+    }
+
+    /**
+     * Activates every network once.
+     *
+     * @param stimuli The inputs, <code>size() * getInputDimension()</code>
+     * values with network <code>n</code>'s inputs starting at
+     * <code>n * getInputDimension()</code>
+     * @param responses The destination for the outputs, packed the same way
+     * @return The destination
+     */
+    public double[] next(double[] stimuli, double[] responses) {
+        if (stimuli.length < size * inputDimension || responses.length < size * outputDimension) {
+            throw new IllegalArgumentException("expected " + size + " networks of " + inputDimension
+                    + " inputs and " + outputDimension + " outputs");
+        }
+        for (Group group : groups) {
+            group.next(stimuli, responses, inputDimension, outputDimension);
+        }
+        for (int s = 0; s < scalars.length; s++) {
+            System.arraycopy(stimuli, scalarIndex[s] * inputDimension, scalarInputs[s], 0, inputDimension);
+            scalars[s].next(scalarInputs[s], scalarResponse);
+            System.arraycopy(scalarResponse, 0, responses, scalarIndex[s] * outputDimension, outputDimension);
+        }
+        for (int s = 0; s < singles.length; s++) {
+            // ANJI networks keep a reference to their inputs, so each gets its own copy
+            int offset = singleIndex[s] * inputDimension;
+            double[] response = singles[s].next(Arrays.copyOfRange(stimuli, offset, offset + inputDimension));
+            System.arraycopy(response, 0, responses, singleIndex[s] * outputDimension, outputDimension);
+        }
+        return responses;
+    }
+
+    /**
+     * Clears the state of every network, as {@link Activator#reset()} does.
+     */
+    public void reset() {
+        for (Group group : groups) {
+            group.reset();
+        }
+        for (CompiledActivator scalar : scalars) {
+            scalar.reset();
+        }
+        for (Activator single : singles) {
+            single.reset();
+        }
+    }
+
+    /**
+     * Drops networks from the batch, keeping the state of the rest.  The
+     * networks kept are renumbered in order, so network <code>n</code>
+     * becomes the number of networks kept before it.
+     *
+     * @param keep Whether to keep each network
+     */
+    public void retain(boolean[] keep) {
+        int[] renumbered = new int[size];
+        int kept = 0;
+        for (int n = 0; n < size; n++) {
+            renumbered[n] = keep[n] ? kept++ : -1;
+        }
+
+        List<Group> groupList = new ArrayList<Group>();
+        for (Group group : groups) {
+            if (group.retain(renumbered) > 0) {
+                groupList.add(group);
+            }
+        }
+        groups = groupList.toArray(new Group[groupList.size()]);
+
+        int s = 0;
+        for (int k = 0; k < scalars.length; k++) {
+            if (keep[scalarIndex[k]]) {
+                scalars[s] = scalars[k];
+                scalarInputs[s] = scalarInputs[k];
+                scalarIndex[s++] = renumbered[scalarIndex[k]];
+            }
+        }
+        scalars = Arrays.copyOf(scalars, s);
+        scalarInputs = Arrays.copyOf(scalarInputs, s);
+        scalarIndex = Arrays.copyOf(scalarIndex, s);
+
+        s = 0;
+        for (int k = 0; k < singles.length; k++) {
+            if (keep[singleIndex[k]]) {
+                singles[s] = singles[k];
+                singleIndex[s++] = renumbered[singleIndex[k]];
+            }
+        }
+        singles = Arrays.copyOf(singles, s);
+        singleIndex = Arrays.copyOf(singleIndex, s);
+        size = kept;
+    }
+
+    /**
+     * @return The number of networks.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return The number of groups of compiled networks with the same topology.
+     */
+    public int getGroupCount() {
+        return groups.length;
+    }
+
+    /**
+     * @return The number of networks stepped one at a time.
+     */
+    public int getSingleCount() {
+        return scalars.length + singles.length;
+    }
+
+    public int getInputDimension() {
+        return inputDimension;
+    }
+
+    public int getOutputDimension() {
+        return outputDimension;
+    }
+
+    /**
+     * @return Everything two networks must share to be activated as one group.
+     */
+    private static int[] structure(CompiledActivator net) {
+        int[] topology = net.getTopology();
+        int[] result = Arrays.copyOf(topology, topology.length + 1 + net.cacheSource.length
+                + net.inputNeurons.length + net.outputNeurons.length);
+        int r = topology.length;
+        result[r++] = net.cycles;
+        for (int c : net.cacheSource) {
+            result[r++] = c;
+        }
+        for (int i : net.inputNeurons) {
+            result[r++] = i;
+        }
+        for (int o : net.outputNeurons) {
+            result[r++] = o;
+        }
+        return result;
+    }
+
+    /**
+     * Compiled networks with the same topology, stored network-minor.
+     */
+    private static final class Group {
+
+        private final int[] members;
+        private int width;
+        private final CompiledActivator shape;
+        private final double[][] weights;
+        private final double[][] cacheWeights;
+        private final ActivationFunction[][] functions;
+        private final double[][] inputs;
+        private final double[][] values;
+        private final double[][] cache;
+        private final double[] sum;
+        private final boolean[] dirty;
+        private boolean settled;
+
+        Group(List<? extends Activator> nets, List<Integer> indices, int inputDimension) {
+            width = indices.size();
+            members = new int[width];
+            shape = (CompiledActivator) nets.get(indices.get(0));
+            int neurons = shape.activation.length;
+            weights = new double[shape.connWeight.length][width];
+            cacheWeights = new double[shape.cacheWeight.length][width];
+            functions = new ActivationFunction[neurons][width];
+            for (int g = 0; g < width; g++) {
+                members[g] = indices.get(g);
+                CompiledActivator net = (CompiledActivator) nets.get(members[g]);
+                for (int k = 0; k < weights.length; k++) {
+                    weights[k][g] = net.connWeight[k];
+                }
+                for (int c = 0; c < cacheWeights.length; c++) {
+                    cacheWeights[c][g] = net.cacheWeight[c];
+                }
+                for (int i = 0; i < neurons; i++) {
+                    functions[i][g] = net.functions[i];
+                }
+            }
+            inputs = new double[inputDimension][width];
+            values = new double[neurons][width];
+            cache = new double[cacheWeights.length][width];
+            sum = new double[width];
+            dirty = new boolean[neurons];
+        }
+
+        void next(double[] stimuli, double[] responses, int inputDimension, int outputDimension) {
+            for (int g = 0; g < width; g++) {
+                int offset = members[g] * inputDimension;
+                for (int i = 0; i < inputDimension; i++) {
+                    inputs[i][g] = stimuli[offset + i];
+                }
+            }
+            for (int cycle = 0; cycle < shape.cycles; cycle++) {
+                step();
+                activate();
+            }
+            int[] outputNeurons = shape.outputNeurons;
+            for (int g = 0; g < width; g++) {
+                int offset = members[g] * outputDimension;
+                for (int o = 0; o < outputNeurons.length; o++) {
+                    responses[offset + o] = values[outputNeurons[o]][g];
+                }
+            }
+        }
+
+        /**
+         * Moves the columns of the networks kept to the front, in order.
+         *
+         * @param renumbered The new number of each network, or -1 to drop it
+         * @return The number of networks left in the group
+         */
+        int retain(int[] renumbered) {
+            int kept = 0;
+            for (int g = 0; g < width; g++) {
+                if (renumbered[members[g]] < 0) {
+                    continue;
+                }
+                members[kept] = renumbered[members[g]];
+                if (kept != g) {
+                    move(weights, g, kept);
+                    move(cacheWeights, g, kept);
+                    move(inputs, g, kept);
+                    move(values, g, kept);
+                    move(cache, g, kept);
+                    for (ActivationFunction[] row : functions) {
+                        row[kept] = row[g];
+                    }
+                }
+                kept++;
+            }
+            width = kept;
+            return width;
+        }
+
+        private static void move(double[][] matrix, int from, int to) {
+            for (double[] row : matrix) {
+                row[to] = row[from];
+            }
+        }
+
+        void reset() {
+            for (double[] row : values) {
+                Arrays.fill(row, 0);
+            }
+            for (double[] row : cache) {
+                Arrays.fill(row, 0);
+            }
+            settled = false;
+        }
+
+        /**
+         * @see CompiledActivator#step()
+         */
+        private void step() {
+            int[] cacheSource = shape.cacheSource;
+            if (settled) {
+                for (int c = 0; c < cacheSource.length; c++) {
+                    double[] w = cacheWeights[c];
+                    double[] v = values[cacheSource[c]];
+                    double[] out = cache[c];
+                    for (int g = 0; g < width; g++) {
+                        out[g] = CompiledActivator.clamp(w[g] * v[g]);
+                    }
+                }
+            } else {
+                for (int g = 0; g < width; g++) {
+                    Arrays.fill(dirty, true);
+                    for (int c = 0; c < cacheSource.length; c++) {
+                        cache[c][g] = CompiledActivator.clamp(cacheWeights[c][g] * lazyValue(cacheSource[c], g));
+                    }
+                }
+                settled = true;
+            }
+        }
+
+        /**
+         * @see CompiledActivator#activate()
+         */
+        private void activate() {
+            int[] connStart = shape.connStart;
+            byte[] connKind = shape.connKind;
+            int[] connSource = shape.connSource;
+            for (int i = 0; i < values.length; i++) {
+                Arrays.fill(sum, 0.0);
+                for (int k = connStart[i]; k < connStart[i + 1]; k++) {
+                    double[] in;
+                    switch (connKind[k]) {
+                        case CompiledActivator.FORWARD:
+                            double[] w = weights[k];
+                            in = values[connSource[k]];
+                            for (int g = 0; g < width; g++) {
+                                sum[g] += w[g] * in[g];
+                            }
+                            continue;
+                        case CompiledActivator.RECURRENT:
+                            in = cache[connSource[k]];
+                            break;
+                        default:
+                            in = inputs[connSource[k]];
+                    }
+                    for (int g = 0; g < width; g++) {
+                        sum[g] += in[g];
+                    }
+                }
+                apply(i, values[i]);
+            }
+        }
+
+        private void apply(int neuron, double[] out) {
+            switch (shape.activation[neuron]) {
+                case CompiledActivator.LINEAR:
+                    for (int g = 0; g < width; g++) {
+                        out[g] = CompiledActivator.clamp(sum[g]);
+                    }
+                    break;
+                case CompiledActivator.SIGMOID:
+                    for (int g = 0; g < width; g++) {
+                        out[g] = CompiledActivator.clamp(1 / (1 + Math.exp(-(sum[g] * CompiledActivator.SIGMOID_SLOPE))));
+                    }
+                    break;
+                case CompiledActivator.SIGNED_SIGMOID:
+                    for (int g = 0; g < width; g++) {
+                        out[g] = CompiledActivator.clamp(
+                                2 * ((1 / (1 + Math.exp(-(sum[g] * CompiledActivator.SIGNED_SIGMOID_SLOPE)))) - 0.5));
+                    }
+                    break;
+                case CompiledActivator.TANH:
+                    for (int g = 0; g < width; g++) {
+                        out[g] = CompiledActivator.clamp(-1 + (2 / (1 + Math.exp(-2 * (sum[g])))));
+                    }
+                    break;
+                default:
+                    ActivationFunction[] f = functions[neuron];
+                    for (int g = 0; g < width; g++) {
+                        out[g] = CompiledActivator.clamp(f[g].apply(sum[g]));
+                    }
+            }
+        }
+
+        /**
+         * @see CompiledActivator#lazyValue(int)
+         */
+        private double lazyValue(int i, int g) {
+            if (dirty[i]) {
+                double total = 0.0;
+                for (int k = shape.connStart[i]; k < shape.connStart[i + 1]; k++) {
+                    switch (shape.connKind[k]) {
+                        case CompiledActivator.FORWARD:
+                            total += weights[k][g] * lazyValue(shape.connSource[k], g);
+                            break;
+                        case CompiledActivator.RECURRENT:
+                            total += cache[shape.connSource[k]][g];
+                            break;
+                        default:
+                            total += inputs[shape.connSource[k]][g];
+                    }
+                }
+                values[i][g] = CompiledActivator.clamp(
+                        CompiledActivator.apply(shape.activation[i], functions[i][g], total));
+                dirty[i] = false;
+            }
+            return values[i][g];
+        }
+    }
+
+    private static final int MIN_GROUP_SIZE = 4;
+}
@@ -0,0 +1,561 @@
+/**
+ * This software is a work of the U.S. Government. It is not subject to copyright
+ * protection and is in the public domain. It may be used as-is or modified and
+ * re-used. The author and the Air Force Institute of Technology would appreciate
+ * credit if this software or parts of it are used or modified for re-use.
+ */
+package edu.ucf.eplex.naiecFramework.ann;
+
+import com.anji.integration.Activator;
+import com.anji.integration.TranscriberException;
+import com.anji.neat.ConnectionAllele;
+import com.anji.neat.NeatChromosomeUtility;
+import com.anji.neat.NeuronAllele;
+import com.anji.neat.NeuronType;
+import com.anji.nn.ActivationFunction;
+import com.anji.nn.ActivationFunctionFactory;
+import com.anji.nn.ActivationFunctionType;
+import com.anji.nn.RecurrencyPolicy;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+import org.jgap.Chromosome;
+
+/**
+ * A NEAT network compiled into flat arrays.  The neurons are numbered in
+ * topological order of the feed-forward connections, and each neuron's
+ * incoming connections are stored contiguously as source, weight and kind, so
+ * one activation is a single pass over primitive arrays with no allocation and
+ * no virtual calls for the common activation functions.
+ * <p>
+ * The network is transcribed exactly as {@link com.anji.integration.AnjiNetTranscriber}
+ * does it, and activated with the same semantics as
+ * {@link com.anji.integration.AnjiActivator}: recurrent connections carry the
+ * source neuron's value from the previous step, every neuron is activated once
+ * per cycle, and each neuron sums its inputs in the same order, so the outputs
+ * are identical to those of the ANJI network built from the same chromosome.
+ * Instances are not thread safe.
+ */
+public class CompiledActivator implements Activator {
+
+    private final String name;
+    private final long[] neuronIds;
+    // The network is read by NetworkClassGenerator and BatchActivator
+    final int cycles;
+    final int[] activation;
+    final ActivationFunction[] functions;
+    final int[] connStart;
+    final byte[] connKind;
+    final int[] connSource;
+    final double[] connWeight;
+    final int[] cacheSource;
+    final double[] cacheWeight;
+    final int[] inputNeurons;
+    final int[] outputNeurons;
+
+    private final double[] values;
+    private final double[] cache;
+    private final boolean[] dirty;
+    private double[] inputs;
+    private boolean settled = false;
+    private NetworkKernel kernel = null;
+
+    private CompiledActivator(String name, int cycles, long[] neuronIds, int[] activation,
+            ActivationFunction[] functions, int[] connStart, byte[] connKind, int[] connSource,
+            double[] connWeight, int[] cacheSource, double[] cacheWeight, int[] inputNeurons, int[] outputNeurons) {
+        this.name = name;
+        this.cycles = cycles;
+        this.neuronIds = neuronIds;
+        this.activation = activation;
+        this.functions = functions;
+        this.connStart = connStart;
+        this.connKind = connKind;
+        this.connSource = connSource;
+        this.connWeight = connWeight;
+        this.cacheSource = cacheSource;
+        this.cacheWeight = cacheWeight;
+        this.inputNeurons = inputNeurons;
+        this.outputNeurons = outputNeurons;
+        values = new double[neuronIds.length];
+        cache = new double[cacheSource.length];
+        dirty = new boolean[neuronIds.length];
+        inputs = new double[inputNeurons.length];
+    }
+
+    /**
+     * @return A network with the same structure, weights and kernel as this
+     * one, in the reset state.
+     */
+    CompiledActivator copy() {
+        CompiledActivator result = new CompiledActivator(name, cycles, neuronIds, activation, functions,
+                connStart, connKind, connSource, connWeight, cacheSource, cacheWeight, inputNeurons, outputNeurons);
+        result.kernel = kernel;
+        return result;
+    }
+
+    /**
+     * Compiles a NEAT chromosome.
+     *
+     * @param chrom The chromosome
+     * @param policy Which connections read the previous step's value
+     * @param cycles The number of activation cycles per call to next()
+     * @return The compiled network
+     * @throws TranscriberException if a connection refers to a missing neuron,
+     * or the policy leaves a loop of feed-forward connections
+     */
+    public static CompiledActivator compile(Chromosome chrom, RecurrencyPolicy policy, int cycles)
+            throws TranscriberException {
+        if (cycles < 1) {
+            throw new IllegalArgumentException("cycles must be >= 1");
+        }
+
+        // Neurons in transcriber order: inputs, outputs, then hidden
+        SortedMap<Long, NeuronAllele> inAlleles = NeatChromosomeUtility.getNeuronMap(chrom.getAlleles(), NeuronType.INPUT);
+        SortedMap<Long, NeuronAllele> outAlleles = NeatChromosomeUtility.getNeuronMap(chrom.getAlleles(), NeuronType.OUTPUT);
+        SortedMap<Long, NeuronAllele> hiddenAlleles = NeatChromosomeUtility.getNeuronMap(chrom.getAlleles(), NeuronType.HIDDEN);
+        List<NeuronAllele> neurons = new ArrayList<NeuronAllele>(inAlleles.values());
+        neurons.addAll(outAlleles.values());
+        neurons.addAll(hiddenAlleles.values());
+        Map<Long, Integer> indexOf = new HashMap<Long, Integer>();
+        for (int i = 0; i < neurons.size(); i++) {
+            indexOf.put(neurons.get(i).getInnovationId(), i);
+        }
+
+        // Walk back from the outputs, as AnjiNetTranscriber.newAnjiNet() does,
+        // so that each neuron's connections are added in the same order
+        List<List<double[]>> incoming = new ArrayList<List<double[]>>();
+        for (int i = 0; i < neurons.size(); i++) {
+            incoming.add(new ArrayList<double[]>());
+        }
+        List<double[]> recurrent = new ArrayList<double[]>();
+        List<ConnectionAllele> remaining = NeatChromosomeUtility.getConnectionList(chrom.getAlleles());
+        Set<Long> current = new HashSet<Long>(outAlleles.keySet());
+        Set<Long> traversed = new HashSet<Long>(current);
+        Set<Long> next = new HashSet<Long>();
+        while (!remaining.isEmpty() && !current.isEmpty()) {
+            next.clear();
+            Collection<ConnectionAllele> layer = NeatChromosomeUtility.extractConnectionAllelesForDestNeurons(remaining, current);
+            for (ConnectionAllele conn : layer) {
+                Integer src = indexOf.get(conn.getSrcNeuronId());
+                Integer dest = indexOf.get(conn.getDestNeuronId());
+                if (src == null || dest == null) {
+                    throw new TranscriberException("connection with missing src or dest neuron: " + conn.toString());
+                }
+                boolean cached = RecurrencyPolicy.LAZY.equals(policy)
+                        || (RecurrencyPolicy.BEST_GUESS.equals(policy) && traversed.contains(conn.getSrcNeuronId()));
+                if (cached) {
+                    incoming.get(dest).add(new double[]{RECURRENT, recurrent.size(), 0});
+                    recurrent.add(new double[]{src, conn.getWeight()});
+                } else {
+                    incoming.get(dest).add(new double[]{FORWARD, src, conn.getWeight()});
+                }
+                next.add(conn.getSrcNeuronId());
+            }
+            traversed.addAll(next);
+            current.clear();
+            current.addAll(next);
+            remaining.removeAll(layer);
+        }
+
+        // The input pattern is connected after the network is built
+        for (int i = 0; i < inAlleles.size(); i++) {
+            incoming.get(i).add(new double[]{INPUT, i, 0});
+        }
+
+        int[] order = topologicalOrder(incoming);
+        int[] position = new int[order.length];
+        for (int p = 0; p < order.length; p++) {
+            position[order[p]] = p;
+        }
+
+        int n = neurons.size();
+        long[] neuronIds = new long[n];
+        int[] activation = new int[n];
+        ActivationFunction[] functions = new ActivationFunction[n];
+        int[] connStart = new int[n + 1];
+        int connCount = 0;
+        for (List<double[]> conns : incoming) {
+            connCount += conns.size();
+        }
+        byte[] connKind = new byte[connCount];
+        int[] connSource = new int[connCount];
+        double[] connWeight = new double[connCount];
+        int k = 0;
+        for (int p = 0; p < n; p++) {
+            NeuronAllele allele = neurons.get(order[p]);
+            neuronIds[p] = allele.getInnovationId();
+            functions[p] = ActivationFunctionFactory.getInstance().get(allele.getActivationType().toString());
+            activation[p] = activationCode(allele.getActivationType());
+            connStart[p] = k;
+            for (double[] conn : incoming.get(order[p])) {
+                connKind[k] = (byte) conn[0];
+                connSource[k] = conn[0] == FORWARD ? position[(int) conn[1]] : (int) conn[1];
+                connWeight[k] = conn[2];
+                k++;
+            }
+        }
+        connStart[n] = k;
+
+        int[] cacheSource = new int[recurrent.size()];
+        double[] cacheWeight = new double[recurrent.size()];
+        for (int c = 0; c < cacheSource.length; c++) {
+            cacheSource[c] = position[(int) recurrent.get(c)[0]];
+            cacheWeight[c] = recurrent.get(c)[1];
+        }
+        int[] inputNeurons = new int[inAlleles.size()];
+        for (int i = 0; i < inputNeurons.length; i++) {
+            inputNeurons[i] = position[i];
+        }
+        int[] outputNeurons = new int[outAlleles.size()];
+        for (int i = 0; i < outputNeurons.length; i++) {
+            outputNeurons[i] = position[inAlleles.size() + i];
+        }
+
+        for (int i = 1; i < outputNeurons.length; i++) {
+            if (functions[outputNeurons[i]].getMinValue() != functions[outputNeurons[0]].getMinValue()
+                    || functions[outputNeurons[i]].getMaxValue() != functions[outputNeurons[0]].getMaxValue()) {
+                throw new IllegalArgumentException("min and max values for response nodes differ");
+            }
+        }
+
+        return new CompiledActivator(chrom.getId().toString(), cycles, neuronIds, activation, functions,
+                connStart, connKind, connSource, connWeight, cacheSource, cacheWeight, inputNeurons, outputNeurons);
+    }
+
+    @Override
+    public double[] next() {
+        return next((double[]) null);
+    }
+
+    @Override
+    public double[] next(double[] stimuli) {
+        return next(stimuli, new double[outputNeurons.length]);
+    }
+
+    /**
+     * Activates the network without allocating.
+     *
+     * @param stimuli The input values, or <code>null</code> to reuse the last ones
+     * @param response The destination for the output values
+     * @return The destination
+     */
+    public double[] next(double[] stimuli, double[] response) {
+        if (stimuli != null) {
+            if (stimuli.length != inputNeurons.length) {
+                throw new IllegalArgumentException("can not change array dimension");
+            }
+            inputs = stimuli;
+        }
+        for (int cycle = 0; cycle < cycles; cycle++) {
+            step();
+            activate();
+        }
+        for (int i = 0; i < outputNeurons.length; i++) {
+            response[i] = values[outputNeurons[i]];
+        }
+        return response;
+    }
+
+    @Override
+    public double[][] next(double[][] stimuli) {
+        double[][] result = new double[stimuli.length][];
+        for (int i = 0; i < stimuli.length; i++) {
+            result[i] = next(stimuli[i]);
+        }
+        return result;
+    }
+
+    /**
+     * Loads the recurrent connections with the values of the previous step.
+     * Right after a reset the neurons have no values yet, and ANJI computes
+     * the sources on demand from the current inputs and whichever recurrent
+     * connections it has already loaded; that is reproduced here.
+     */
+    private void step() {
+        if (settled) {
+            for (int c = 0; c < cache.length; c++) {
+                cache[c] = clamp(cacheWeight[c] * values[cacheSource[c]]);
+            }
+        } else {
+            for (int i = 0; i < dirty.length; i++) {
+                dirty[i] = true;
+            }
+            for (int c = 0; c < cache.length; c++) {
+                cache[c] = clamp(cacheWeight[c] * lazyValue(cacheSource[c]));
+            }
+            settled = true;
+        }
+    }
+
+    /**
+     * Activates every neuron once, in topological order.
+     */
+    private void activate() {
+        if (kernel != null) {
+            kernel.activate(values, cache, inputs, connWeight, functions);
+            return;
+        }
+        for (int i = 0; i < values.length; i++) {
+            double sum = 0.0;
+            for (int k = connStart[i]; k < connStart[i + 1]; k++) {
+                switch (connKind[k]) {
+                    case FORWARD:
+                        sum += connWeight[k] * values[connSource[k]];
+                        break;
+                    case RECURRENT:
+                        sum += cache[connSource[k]];
+                        break;
+                    default:
+                        sum += inputs[connSource[k]];
+                }
+            }
+            values[i] = clamp(apply(i, sum));
+        }
+    }
+
+    private double lazyValue(int i) {
+        if (dirty[i]) {
+            double sum = 0.0;
+            for (int k = connStart[i]; k < connStart[i + 1]; k++) {
+                switch (connKind[k]) {
+                    case FORWARD:
+                        sum += connWeight[k] * lazyValue(connSource[k]);
+                        break;
+                    case RECURRENT:
+                        sum += cache[connSource[k]];
+                        break;
+                    default:
+                        sum += inputs[connSource[k]];
+                }
+            }
+            values[i] = clamp(apply(i, sum));
+            dirty[i] = false;
+        }
+        return values[i];
+    }
+
+    private double apply(int neuron, double input) {
+        return apply(activation[neuron], functions[neuron], input);
+    }
+
+    /**
+     * @param code The activation code of a neuron
+     * @param function The neuron's activation function
+     * @param input The weighted sum of the neuron's inputs
+     * @return The activation function applied to the input
+     */
+    static double apply(int code, ActivationFunction function, double input) {
+        switch (code) {
+            case LINEAR:
+                return input;
+            case SIGMOID:
+                return 1 / (1 + Math.exp(-(input * SIGMOID_SLOPE)));
+            case SIGNED_SIGMOID:
+                return 2 * ((1 / (1 + Math.exp(-(input * SIGNED_SIGMOID_SLOPE)))) - 0.5);
+            case TANH:
+                return -1 + (2 / (1 + Math.exp(-2 * (input))));
+            default:
+                return function.apply(input);
+        }
+    }
+
+    static double clamp(double value) {
+        return Math.min(Math.max(value, -Double.MAX_VALUE), Double.MAX_VALUE);
+    }
+
+    private static int activationCode(ActivationFunctionType type) {
+        if (ActivationFunctionType.LINEAR.equals(type)) {
+            return LINEAR;
+        } else if (ActivationFunctionType.SIGMOID.equals(type)) {
+            return SIGMOID;
+        } else if (ActivationFunctionType.SIGNED_SIGMOID.equals(type)) {
+            return SIGNED_SIGMOID;
+        } else if (ActivationFunctionType.TANH.equals(type)) {
+            return TANH;
+        }
+        return OTHER;
+    }
+
+    /**
+     * @return The neurons ordered so that each comes after the sources of its
+     * feed-forward connections.
+     * @throws TranscriberException if the feed-forward connections form a loop
+     */
+    private static int[] topologicalOrder(List<List<double[]>> incoming) throws TranscriberException {
+        int n = incoming.size();
+        int[] pending = new int[n];
+        List<List<Integer>> outgoing = new ArrayList<List<Integer>>();
+        for (int i = 0; i < n; i++) {
+            outgoing.add(new ArrayList<Integer>());
+        }
+        for (int i = 0; i < n; i++) {
+            for (double[] conn : incoming.get(i)) {
+                if (conn[0] == FORWARD) {
+                    outgoing.get((int) conn[1]).add(i);
+                    pending[i]++;
+                }
+            }
+        }
+        int[] order = new int[n];
+        int head = 0, tail = 0;
+        for (int i = 0; i < n; i++) {
+            if (pending[i] == 0) {
+                order[tail++] = i;
+            }
+        }
+        while (head < tail) {
+            for (int dest : outgoing.get(order[head++])) {
+                if (--pending[dest] == 0) {
+                    order[tail++] = dest;
+                }
+            }
+        }
+        if (tail < n) {
+            throw new TranscriberException("feed-forward connections form a loop; use a recurrency policy that allows recurrent connections");
+        }
+        return order;
+    }
+
+    @Override
+    public void reset() {
+        for (int i = 0; i < values.length; i++) {
+            values[i] = 0;
+        }
+        for (int c = 0; c < cache.length; c++) {
+            cache[c] = 0;
+        }
+        settled = false;
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public double getMinResponse() {
+        return functions[outputNeurons[0]].getMinValue();
+    }
+
+    @Override
+    public double getMaxResponse() {
+        return functions[outputNeurons[0]].getMaxValue();
+    }
+
+    @Override
+    public int getInputDimension() {
+        return inputNeurons.length;
+    }
+
+    @Override
+    public int getOutputDimension() {
+        return outputNeurons.length;
+    }
+
+    /**
+     * @return The number of recurrent connections, as counted by
+     * {@link com.anji.integration.AnjiActivator#getConnectionCount()}.
+     */
+    @Override
+    public int getConnectionCount() {
+        return cache.length;
+    }
+
+    /**
+     * @return The number of neurons.
+     */
+    public int getNeuronCount() {
+        return values.length;
+    }
+
+    /**
+     * @return <code>true</code> if activation runs a generated kernel rather
+     * than the array loop.
+     */
+    public boolean isGenerated() {
+        return kernel != null;
+    }
+
+    /**
+     * @param aKernel Straight line code for this network's topology
+     */
+    void setKernel(NetworkKernel aKernel) {
+        kernel = aKernel;
+    }
+
+    /**
+     * @return Everything about the network that a generated kernel depends on:
+     * the activation codes, the connection ranges, and the kind and source of
+     * each connection.  The weights are not included.
+     */
+    int[] getTopology() {
+        int n = activation.length;
+        int[] topology = new int[2 * n + 1 + 2 * connKind.length];
+        System.arraycopy(activation, 0, topology, 0, n);
+        System.arraycopy(connStart, 0, topology, n, n + 1);
+        for (int k = 0; k < connKind.length; k++) {
+            topology[2 * n + 1 + 2 * k] = connKind[k];
+            topology[2 * n + 2 + 2 * k] = connSource[k];
+        }
+        return topology;
+    }
+
+    @Override
+    public String toXml() {
+        StringBuilder result = new StringBuilder();
+        result.append("<").append(getXmlRootTag()).append(">\n");
+        result.append("<title>").append(name).append("</title>\n");
+        for (int i = 0; i < neuronIds.length; i++) {
+            result.append("<neuron id=\"").append(neuronIds[i]);
+            result.append("\" value=\"").append(values[i]);
+            result.append("\" activation=\"").append(functions[i].toString()).append("\" />\n");
+        }
+        for (int i = 0; i < neuronIds.length; i++) {
+            for (int k = connStart[i]; k < connStart[i + 1]; k++) {
+                if (connKind[k] == INPUT) {
+                    continue;
+                }
+                boolean isRecurrent = connKind[k] == RECURRENT;
+                result.append("<connection src-id=\"");
+                result.append(neuronIds[isRecurrent ? cacheSource[connSource[k]] : connSource[k]]);
+                result.append("\" dest-id=\"").append(neuronIds[i]);
+                result.append("\" weight=\"").append(isRecurrent ? cacheWeight[connSource[k]] : connWeight[k]);
+                result.append(isRecurrent ? "\" recurrent=\"true\" />\n" : "\" />\n");
+            }
+        }
+        result.append("</").append(getXmlRootTag()).append(">\n");
+        return result.toString();
+    }
+
+    @Override
+    public String getXmlRootTag() {
+        return "network";
+    }
+
+    @Override
+    public String getXmld() {
+        return name;
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+
+    static final byte FORWARD = 0;
+    static final byte RECURRENT = 1;
+    static final byte INPUT = 2;
+    static final int OTHER = 0;
+    static final int LINEAR = 1;
+    static final int SIGMOID = 2;
+    static final int SIGNED_SIGMOID = 3;
+    static final int TANH = 4;
+    // The slopes of com.anji.nn.SigmoidActivationFunction and SignedSigmoidActivationFunction
+    static final double SIGMOID_SLOPE = 4.924273d;
+    static final double SIGNED_SIGMOID_SLOPE = 2.2;
+}
@@ -0,0 +1,470 @@
+/**
+ * This software is a work of the U.S. Government. It is not subject to copyright
+ * protection and is in the public domain. It may be used as-is or modified and
+ * re-used. The author and the Air Force Institute of Technology would appreciate
+ * credit if this software or parts of it are used or modified for re-use.
+ */
+package edu.ucf.eplex.naiecFramework.ann;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Generates a {@link NetworkKernel} class for a network topology, with every
+ * neuron and connection of {@link CompiledActivator}'s array loop unrolled into
+ * straight line bytecode, so the JIT can keep the whole network in registers.
+ * The weights stay in an array, so networks that differ only in their weights
+ * share a class; the most recently used classes are kept, up to a limit.  Each
+ * class is defined by its own class loader, so an evicted class can be unloaded.
+ * <p>
+ * The code performs the same operations in the same order as the array loop,
+ * so its outputs are identical.  A kernel larger than the JIT will compile
+ * (HotSpot skips methods over 8000 bytes of bytecode) is not generated, and
+ * the network keeps the array loop.
+ */
+public class NetworkClassGenerator {
+
+    private final Map<TopologyKey, NetworkKernel> kernels;
+    private long generated = 0;
+    private long reused = 0;
+    private long tooLarge = 0;
+
+    /**
+     * @param cacheSize The number of generated classes to keep
+     */
+    public NetworkClassGenerator(int cacheSize) {
+        kernels = new KernelCache(cacheSize);
+    }
+
+    /**
+     * Attaches a generated kernel to a network, generating its class if no
+     * network with the same topology has been seen recently.
+     *
+     * @param net The network
+     * @return <code>true</code> if the network now runs a generated kernel
+     */
+    public synchronized boolean attach(CompiledActivator net) {
+        TopologyKey key = new TopologyKey(net.getTopology());
+        NetworkKernel kernel = kernels.get(key);
+        if (kernel != null) {
+            reused++;
+        } else if (!kernels.containsKey(key)) {
+            kernel = generate(net);
+            if (kernel != null) {
+                generated++;
+            } else {
+                tooLarge++;
+            }
+            // A topology that is too large is remembered too, so it is not retried
+            kernels.put(key, kernel);
+        }
+        net.setKernel(kernel);
+        return kernel != null;
+    }
+
+    /**
+     * @return The number of kernel classes generated.
+     */
+    public synchronized long getGeneratedCount() {
+        return generated;
+    }
+
+    /**
+     * @return The number of networks given an already generated kernel.
+     */
+    public synchronized long getReusedCount() {
+        return reused;
+    }
+
+    /**
+     * @return The number of topologies whose kernel would be too large to compile.
+     */
+    public synchronized long getTooLargeCount() {
+        return tooLarge;
+    }
+
+    private NetworkKernel generate(CompiledActivator net) {
+        try {
+            String className = KERNEL_PACKAGE + "GeneratedNetwork" + (generated + tooLarge);
+            ConstantPool pool = new ConstantPool();
+            int thisClass = pool.classRef(className);
+            int superClass = pool.classRef(KERNEL_SUPERCLASS);
+            int superInit = pool.methodRef(KERNEL_SUPERCLASS, "<init>", "()V");
+            byte[] code = activateCode(net, pool);
+            if (code.length > HUGE_METHOD_LIMIT) {
+                return null;
+            }
+
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.writeInt(0xCAFEBABE);
+            out.writeShort(0);
+            out.writeShort(CLASS_VERSION);
+            int initName = pool.utf8("<init>");
+            int initType = pool.utf8("()V");
+            int activateName = pool.utf8("activate");
+            int activateType = pool.utf8(ACTIVATE_DESCRIPTOR);
+            int codeName = pool.utf8("Code");
+            pool.write(out);
+            out.writeShort(ACC_PUBLIC | ACC_FINAL | ACC_SUPER);
+            out.writeShort(thisClass);
+            out.writeShort(superClass);
+            out.writeShort(0);
+            out.writeShort(0);
+            out.writeShort(2);
+
+            // public GeneratedNetwork() { super(); }
+            byte[] init = {ALOAD_0, INVOKESPECIAL, (byte) (superInit >> 8), (byte) superInit, RETURN};
+            writeMethod(out, initName, initType, codeName, 1, 1, init);
+            writeMethod(out, activateName, activateType, codeName, MAX_STACK, MAX_LOCALS, code);
+            out.writeShort(0);
+            out.flush();
+
+            byte[] classFile = bytes.toByteArray();
+            Class<?> kernelClass = new KernelLoader(NetworkKernel.class.getClassLoader())
+                    .define(className.replace('/', '.'), classFile);
+            return (NetworkKernel) kernelClass.newInstance();
+        } catch (IOException ex) {
+            Logger.getLogger(NetworkClassGenerator.class.getName()).log(Level.SEVERE, null, ex);
+        } catch (InstantiationException ex) {
+            Logger.getLogger(NetworkClassGenerator.class.getName()).log(Level.SEVERE, null, ex);
+        } catch (IllegalAccessException ex) {
+            Logger.getLogger(NetworkClassGenerator.class.getName()).log(Level.SEVERE, null, ex);
+        }
+        return null;
+    }
+
+    /**
+     * Emits the body of activate(): for each neuron, the weighted sum of its
+     * inputs into a local, then the activation function and clamp into its value.
+     */
+    private static byte[] activateCode(CompiledActivator net, ConstantPool pool) throws IOException {
+        int exp = pool.methodRef("java/lang/Math", "exp", "(D)D");
+        int max = pool.methodRef("java/lang/Math", "max", "(DD)D");
+        int min = pool.methodRef("java/lang/Math", "min", "(DD)D");
+        int apply = pool.interfaceMethodRef("com/anji/nn/ActivationFunction", "apply", "(D)D");
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream code = new DataOutputStream(bytes);
+        for (int i = 0; i < net.activation.length; i++) {
+            code.writeByte(DCONST_0);
+            for (int k = net.connStart[i]; k < net.connStart[i + 1]; k++) {
+                switch (net.connKind[k]) {
+                    case CompiledActivator.FORWARD:
+                        // weights[k] * values[src]
+                        code.writeByte(ALOAD);
+                        code.writeByte(WEIGHTS);
+                        pushInt(code, pool, k);
+                        code.writeByte(DALOAD);
+                        code.writeByte(ALOAD_0 + VALUES);
+                        pushInt(code, pool, net.connSource[k]);
+                        code.writeByte(DALOAD);
+                        code.writeByte(DMUL);
+                        break;
+                    case CompiledActivator.RECURRENT:
+                        code.writeByte(ALOAD_0 + CACHE);
+                        pushInt(code, pool, net.connSource[k]);
+                        code.writeByte(DALOAD);
+                        break;
+                    default:
+                        code.writeByte(ALOAD_0 + INPUTS);
+                        pushInt(code, pool, net.connSource[k]);
+                        code.writeByte(DALOAD);
+                }
+                code.writeByte(DADD);
+            }
+            code.writeByte(DSTORE);
+            code.writeByte(SUM);
+
+            code.writeByte(ALOAD_0 + VALUES);
+            pushInt(code, pool, i);
+            switch (net.activation[i]) {
+                case CompiledActivator.LINEAR:
+                    loadSum(code);
+                    break;
+                case CompiledActivator.SIGMOID:
+                    // 1 / (1 + exp(-(sum * slope)))
+                    code.writeByte(DCONST_1);
+                    code.writeByte(DCONST_1);
+                    loadSum(code);
+                    pushDouble(code, pool, CompiledActivator.SIGMOID_SLOPE);
+                    code.writeByte(DMUL);
+                    code.writeByte(DNEG);
+                    invoke(code, INVOKESTATIC, exp);
+                    code.writeByte(DADD);
+                    code.writeByte(DDIV);
+                    break;
+                case CompiledActivator.SIGNED_SIGMOID:
+                    // 2 * ((1 / (1 + exp(-(sum * slope)))) - 0.5)
+                    pushDouble(code, pool, 2.0);
+                    code.writeByte(DCONST_1);
+                    code.writeByte(DCONST_1);
+                    loadSum(code);
+                    pushDouble(code, pool, CompiledActivator.SIGNED_SIGMOID_SLOPE);
+                    code.writeByte(DMUL);
+                    code.writeByte(DNEG);
+                    invoke(code, INVOKESTATIC, exp);
+                    code.writeByte(DADD);
+                    code.writeByte(DDIV);
+                    pushDouble(code, pool, 0.5);
+                    code.writeByte(DSUB);
+                    code.writeByte(DMUL);
+                    break;
+                case CompiledActivator.TANH:
+                    // -1 + (2 / (1 + exp(-2 * sum)))
+                    pushDouble(code, pool, -1.0);
+                    pushDouble(code, pool, 2.0);
+                    code.writeByte(DCONST_1);
+                    pushDouble(code, pool, -2.0);
+                    loadSum(code);
+                    code.writeByte(DMUL);
+                    invoke(code, INVOKESTATIC, exp);
+                    code.writeByte(DADD);
+                    code.writeByte(DDIV);
+                    code.writeByte(DADD);
+                    break;
+                default:
+                    // functions[i].apply(sum)
+                    code.writeByte(ALOAD);
+                    code.writeByte(FUNCTIONS);
+                    pushInt(code, pool, i);
+                    code.writeByte(AALOAD);
+                    loadSum(code);
+                    invoke(code, INVOKEINTERFACE, apply);
+                    code.writeByte(3);
+                    code.writeByte(0);
+            }
+            // Math.min(Math.max(value, -Double.MAX_VALUE), Double.MAX_VALUE)
+            pushDouble(code, pool, -Double.MAX_VALUE);
+            invoke(code, INVOKESTATIC, max);
+            pushDouble(code, pool, Double.MAX_VALUE);
+            invoke(code, INVOKESTATIC, min);
+            code.writeByte(DASTORE);
+        }
+        code.writeByte(RETURN);
+        code.flush();
+        return bytes.toByteArray();
+    }
+
+    private static void writeMethod(DataOutputStream out, int name, int descriptor, int codeName,
+            int maxStack, int maxLocals, byte[] code) throws IOException {
+        out.writeShort(ACC_PUBLIC);
+        out.writeShort(name);
+        out.writeShort(descriptor);
+        out.writeShort(1);
+        out.writeShort(codeName);
+        out.writeInt(12 + code.length);
+        out.writeShort(maxStack);
+        out.writeShort(maxLocals);
+        out.writeInt(code.length);
+        out.write(code);
+        out.writeShort(0);
+        out.writeShort(0);
+    }
+
+    private static void loadSum(DataOutputStream code) throws IOException {
+        code.writeByte(DLOAD);
+        code.writeByte(SUM);
+    }
+
+    private static void invoke(DataOutputStream code, int opcode, int method) throws IOException {
+        code.writeByte(opcode);
+        code.writeShort(method);
+    }
+
+    private static void pushInt(DataOutputStream code, ConstantPool pool, int value) throws IOException {
+        if (value <= 5) {
+            code.writeByte(ICONST_0 + value);
+        } else if (value <= Byte.MAX_VALUE) {
+            code.writeByte(BIPUSH);
+            code.writeByte(value);
+        } else if (value <= Short.MAX_VALUE) {
+            code.writeByte(SIPUSH);
+            code.writeShort(value);
+        } else {
+            code.writeByte(LDC_W);
+            code.writeShort(pool.integer(value));
+        }
+    }
+
+    private static void pushDouble(DataOutputStream code, ConstantPool pool, double value) throws IOException {
+        code.writeByte(LDC2_W);
+        code.writeShort(pool.doubleValue(value));
+    }
+
+    /**
+     * The constant pool of a class file, with each constant stored once.
+     */
+    private static final class ConstantPool {
+
+        private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        private final DataOutputStream entries = new DataOutputStream(bytes);
+        private final Map<String, Integer> indices = new HashMap<String, Integer>();
+        private int next = 1;
+
+        int utf8(String value) throws IOException {
+            Integer index = indices.get("U" + value);
+            if (index == null) {
+                entries.writeByte(1);
+                entries.writeUTF(value);
+                index = add("U" + value, 1);
+            }
+            return index;
+        }
+
+        int classRef(String name) throws IOException {
+            Integer index = indices.get("C" + name);
+            if (index == null) {
+                int nameIndex = utf8(name);
+                entries.writeByte(7);
+                entries.writeShort(nameIndex);
+                index = add("C" + name, 1);
+            }
+            return index;
+        }
+
+        int methodRef(String owner, String name, String descriptor) throws IOException {
+            return memberRef(10, owner, name, descriptor);
+        }
+
+        int interfaceMethodRef(String owner, String name, String descriptor) throws IOException {
+            return memberRef(11, owner, name, descriptor);
+        }
+
+        int integer(int value) throws IOException {
+            Integer index = indices.get("I" + value);
+            if (index == null) {
+                entries.writeByte(3);
+                entries.writeInt(value);
+                index = add("I" + value, 1);
+            }
+            return index;
+        }
+
+        int doubleValue(double value) throws IOException {
+            long bits = Double.doubleToRawLongBits(value);
+            Integer index = indices.get("D" + bits);
+            if (index == null) {
+                entries.writeByte(6);
+                entries.writeLong(bits);
+                // A double takes two slots
+                index = add("D" + bits, 2);
+            }
+            return index;
+        }
+
+        void write(DataOutputStream out) throws IOException {
+            entries.flush();
+            out.writeShort(next);
+            bytes.writeTo(out);
+        }
+
+        private int memberRef(int tag, String owner, String name, String descriptor) throws IOException {
+            String key = tag + owner + "." + name + descriptor;
+            Integer index = indices.get(key);
+            if (index == null) {
+                int ownerIndex = classRef(owner);
+                int nameIndex = utf8(name);
+                int typeIndex = utf8(descriptor);
+                entries.writeByte(12);
+                entries.writeShort(nameIndex);
+                entries.writeShort(typeIndex);
+                int nameAndType = add("N" + key, 1);
+                entries.writeByte(tag);
+                entries.writeShort(ownerIndex);
+                entries.writeShort(nameAndType);
+                index = add(key, 1);
+            }
+            return index;
+        }
+
+        private int add(String key, int slots) {
+            int index = next;
+            indices.put(key, index);
+            next += slots;
+            return index;
+        }
+    }
+
+    /**
+     * The most recently used kernels, up to a limit.
+     */
+    private static final class KernelCache extends LinkedHashMap<TopologyKey, NetworkKernel> {
+
+        private final int cacheSize;
+
+        KernelCache(int cacheSize) {
+            super(16, 0.75f, true);
+            this.cacheSize = cacheSize;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<TopologyKey, NetworkKernel> eldest) {
+            return size() > cacheSize;
+        }
+
+        private static final long serialVersionUID = 1L;
+    }
+
+    /**
+     * Defines one generated class.
+     */
+    private static final class KernelLoader extends ClassLoader {
+
+        KernelLoader(ClassLoader parent) {
+            super(parent);
+        }
+
+        Class<?> define(String name, byte[] classFile) {
+            return defineClass(name, classFile, 0, classFile.length);
+        }
+    }
+
+    private static final String KERNEL_PACKAGE = "edu/ucf/eplex/naiecFramework/ann/";
+    private static final String KERNEL_SUPERCLASS = KERNEL_PACKAGE + "NetworkKernel";
+    private static final String ACTIVATE_DESCRIPTOR = "([D[D[D[D[Lcom/anji/nn/ActivationFunction;)V";
+    // Java 6 class files need no stack map frames, and the code has no branches
+    private static final int CLASS_VERSION = 50;
+    private static final int HUGE_METHOD_LIMIT = 8000;
+    private static final int ACC_PUBLIC = 0x0001;
+    private static final int ACC_FINAL = 0x0010;
+    private static final int ACC_SUPER = 0x0020;
+    // activate(this, values, cache, inputs, weights, functions) and the double sum
+    private static final int VALUES = 1;
+    private static final int CACHE = 2;
+    private static final int INPUTS = 3;
+    private static final int WEIGHTS = 4;
+    private static final int FUNCTIONS = 5;
+    private static final int SUM = 6;
+    private static final int MAX_LOCALS = 8;
+    private static final int MAX_STACK = 16;
+    private static final int ICONST_0 = 0x03;
+    private static final int DCONST_0 = 0x0e;
+    private static final int DCONST_1 = 0x0f;
+    private static final int BIPUSH = 0x10;
+    private static final int SIPUSH = 0x11;
+    private static final int LDC_W = 0x13;
+    private static final int LDC2_W = 0x14;
+    private static final int DLOAD = 0x18;
+    private static final int ALOAD = 0x19;
+    private static final byte ALOAD_0 = 0x2a;
+    private static final int DALOAD = 0x31;
+    private static final int AALOAD = 0x32;
+    private static final int DSTORE = 0x39;
+    private static final int DASTORE = 0x52;
+    private static final int DADD = 0x63;
+    private static final int DSUB = 0x67;
+    private static final int DMUL = 0x6b;
+    private static final int DDIV = 0x6f;
+    private static final int DNEG = 0x77;
+    private static final byte RETURN = (byte) 0xb1;
+    private static final byte INVOKESPECIAL = (byte) 0xb7;
+    private static final int INVOKESTATIC = 0xb8;
+    private static final int INVOKEINTERFACE = 0xb9;
+}
@@ -0,0 +1,33 @@
+/**
+ * This software is a work of the U.S. Government. It is not subject to copyright
+ * protection and is in the public domain. It may be used as-is or modified and
+ * re-used. The author and the Air Force Institute of Technology would appreciate
+ * credit if this software or parts of it are used or modified for re-use.
+ */
+package edu.ucf.eplex.naiecFramework.ann;
+
+import com.anji.nn.ActivationFunction;
+
+/**
+ * One activation pass of a {@link CompiledActivator}, unrolled into straight
+ * line code for a single network topology by {@link NetworkClassGenerator}.
+ * Kernels hold no state; the weights and neuron values are passed in, so one
+ * kernel serves every network with the same topology.
+ */
+public abstract class NetworkKernel {
+
+    protected NetworkKernel() {
+    }
+
+    /**
+     * Activates every neuron once, in topological order.
+     *
+     * @param values The neuron values, updated in place
+     * @param cache The values carried by the recurrent connections
+     * @param inputs The input pattern
+     * @param weights The weight of each connection
+     * @param functions The activation function of each neuron
+     */
+    public abstract void activate(double[] values, double[] cache, double[] inputs, double[] weights,
+            ActivationFunction[] functions);
+}
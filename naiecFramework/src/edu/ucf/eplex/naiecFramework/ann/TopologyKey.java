@@ -0,0 +1,33 @@
+/**
+ * This software is a work of the U.S. Government. It is not subject to copyright
+ * protection and is in the public domain. It may be used as-is or modified and
+ * re-used. The author and the Air Force Institute of Technology would appreciate
+ * credit if this software or parts of it are used or modified for re-use.
+ */
+package edu.ucf.eplex.naiecFramework.ann;
+
+import java.util.Arrays;
+
+/**
+ * A network topology, compared by value.
+ */
+final class TopologyKey {
+
+    private final int[] topology;
+    private final int hash;
+
+    TopologyKey(int[] topology) {
+        this.topology = topology;
+        hash = Arrays.hashCode(topology);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof TopologyKey && Arrays.equals(topology, ((TopologyKey) o).topology);
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+}
@@ -18,6 +18,7 @@ import com.anji.run.Run;
 import com.anji.util.Properties;
 import com.anji.util.Reset;
 
+import edu.ucf.eplex.naiecFramework.ann.ActivatorFactory;
 import edu.ucf.eplex.naiecFramework.domain.Candidate;
 import edu.ucf.eplex.naiecFramework.domain.EvaluationDomain;
 
@@ -45,6 +46,7 @@ public class NaiecController implements EvaluationFunction {
     private static final long serialVersionUID = 8970923650772351601L;
     private Properties props;
     private NeatConfiguration config;
+    private ActivatorFactory phenotypes;
     private Genotype genotype;
     private Persistence db = null;
     private final EvaluationDomain<?> f_domain;
@@ -78,6 +80,7 @@ public class NaiecController implements EvaluationFunction {
             } else {
                 config = new NeatConfiguration(props);
             }
+            phenotypes = new ActivatorFactory(config, props);
             System.out.println("Created config object...");
 
             // peristence
@@ -429,7 +432,7 @@ public class NaiecController implements EvaluationFunction {
      */
     private Candidate getCandidate(Chromosome chrom) {
         if (!candidates.containsKey(chrom)) {
-            candidates.put(chrom, new Candidate(chrom, config));
+            candidates.put(chrom, new Candidate(chrom, phenotypes));
         }
         return candidates.get(chrom);
     }
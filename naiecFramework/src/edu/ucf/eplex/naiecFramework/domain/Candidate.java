@@ -9,8 +9,15 @@
 package edu.ucf.eplex.naiecFramework.domain;
 
 import com.anji.integration.Activator;
-import com.anji.neat.NeatConfiguration;
+import com.anji.neat.ConnectionAllele;
+import com.anji.neat.NeuronAllele;
+import edu.ucf.eplex.naiecFramework.ann.ActivatorFactory;
+import edu.ucf.eplex.naiecFramework.ann.CompiledActivator;
+import java.util.TreeSet;
+import java.util.concurrent.atomic.AtomicLong;
+import org.jgap.Allele;
 import org.jgap.Chromosome;
+import org.jgap.ChromosomeMaterial;
 
 /**
  *
@@ -19,24 +26,135 @@ import org.jgap.Chromosome;
 public class Candidate implements Comparable<Candidate> {
 
     private final Chromosome m_chromosome;
-    private final NeatConfiguration m_config;
+    private final ActivatorFactory m_phenotypes;
+    private Activator m_ann = null;
+    private long m_annSignature = 0;
 
     /**
      * 
      * @param aChromosome
-     * @param config 
+     * @param phenotypes Builds the chromosome's network
      */
-    public Candidate(Chromosome aChromosome, NeatConfiguration config) {
+    public Candidate(Chromosome aChromosome, ActivatorFactory phenotypes) {
         m_chromosome = aChromosome;
-        m_config = config;
+        m_phenotypes = phenotypes;
+    }
+
+    /**
+     * Creates a stand-in for a chromosome known only by its ID, e.g. a subject
+     * restored from a novelty archive file.  Candidates are equal when their
+     * chromosome IDs are, so the stand-in matches the real candidate if it is
+     * evaluated again.  The stand-in has no genes and no network.
+     *
+     * @param id The chromosome ID
+     * @return A candidate with an empty chromosome
+     */
+    static Candidate forId(Long id) {
+        return new Candidate(new Chromosome(new ChromosomeMaterial(new TreeSet<Allele>()), id), null);
     }
 
 	public double[] next(double[] input) {
 		return getANN().next(input);
 	}
 
+    /**
+     * Activates the network, writing its outputs into a caller's buffer.
+     * Compiled networks do this without allocating; any other network's
+     * outputs are copied from the array it returns.
+     *
+     * @param input The input values
+     * @param output The destination for the output values
+     * @return The destination
+     */
+    public double[] next(double[] input, double[] output) {
+        Activator ann = getANN();
+        if (ann instanceof CompiledActivator) {
+            return ((CompiledActivator) ann).next(input, output);
+        }
+        double[] response = ann.next(input);
+        System.arraycopy(response, 0, output, 0, response.length);
+        return output;
+    }
+
+    /**
+     * The network is built from the chromosome on first use and then cached,
+     * so its recurrent state carries from one activation to the next until
+     * {@link #resetANN()} is called.
+     *
+     * @return The cached network for this candidate's chromosome
+     */
 	public Activator getANN() {
-        return m_config.createANN(m_chromosome);
+        if (m_ann == null) {
+            buildANN();
+        }
+        return m_ann;
+    }
+
+    /**
+     * Prepares the network for a new trial by clearing its recurrent state.
+     * The network is rebuilt instead if the chromosome's genes have changed
+     * since it was built.
+     */
+    public void resetANN() {
+        if (m_ann == null || m_annSignature != geneSignature()) {
+            buildANN();
+        } else {
+            m_ann.reset();
+            cacheHits.incrementAndGet();
+        }
+    }
+
+    /**
+     * Discards the cached network, e.g. after the chromosome is mutated in place.
+     */
+    public void invalidateANN() {
+        m_ann = null;
+    }
+
+    /**
+     * @return The network this candidate's chromosome builds, as a key that
+     * equals that of any chromosome building the same network
+     */
+    public PhenotypeKey getPhenotypeKey() {
+        return new PhenotypeKey(m_chromosome);
+    }
+
+    /**
+     * @return The number of networks built from chromosomes by all candidates.
+     */
+    public static long getPhenotypeBuildCount() {
+        return phenotypeBuilds.get();
+    }
+
+    /**
+     * @return The number of trials for which any candidate reused its cached
+     * network rather than building one; counted by {@link #resetANN()}.
+     */
+    public static long getPhenotypeCacheHitCount() {
+        return cacheHits.get();
+    }
+
+    private void buildANN() {
+        m_ann = m_phenotypes.newActivator(m_chromosome);
+        m_annSignature = geneSignature();
+        phenotypeBuilds.incrementAndGet();
+    }
+
+    /**
+     * @return A hash of the chromosome's neurons, connections and weights,
+     * which changes when the chromosome is mutated.
+     */
+    private long geneSignature() {
+        long signature = m_chromosome.size();
+        for (Allele allele : m_chromosome.getAlleles()) {
+            signature = 31 * signature + allele.getInnovationId();
+            if (allele instanceof ConnectionAllele) {
+                signature = 31 * signature + Double.doubleToLongBits(((ConnectionAllele) allele).getWeight());
+            } else if (allele instanceof NeuronAllele) {
+                signature = 31 * signature + ((NeuronAllele) allele).getActivationType().toString().hashCode();
+            }
+        }
+        return signature;
     }
     
     /**
@@ -192,4 +310,7 @@ public class Candidate implements Comparable<Candidate> {
     public int hashCode() {
         return m_chromosome.hashCode();
     }
+
+    private static final AtomicLong phenotypeBuilds = new AtomicLong();
+    private static final AtomicLong cacheHits = new AtomicLong();
 }
@@ -9,11 +9,19 @@
 package edu.ucf.eplex.naiecFramework.domain;
 
 import com.anji.util.Properties;
-import edu.wlu.cs.levy.CG.KDTree;
-import edu.wlu.cs.levy.CG.KeyDuplicateException;
-import edu.wlu.cs.levy.CG.KeySizeException;
+import edu.ucf.eplex.naiecFramework.novelty.BehaviorIndex;
+import edu.ucf.eplex.naiecFramework.novelty.BehaviorStore;
+import edu.ucf.eplex.naiecFramework.novelty.FlatBehaviorIndex;
+import edu.ucf.eplex.naiecFramework.novelty.KDTreeBehaviorIndex;
+import edu.ucf.eplex.naiecFramework.novelty.LshBehaviorIndex;
+import edu.ucf.eplex.naiecFramework.novelty.NoveltyArchiveFile;
 
+import java.io.File;
+import java.io.IOException;
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import org.jgap.BehaviorVector;
@@ -28,10 +36,16 @@ public abstract class DomainNoveltyMetric<Behavior> {
 
     private int evaluations = 0;
     private int newArchiveMembers = 0;
-    private LinkedList<Candidate> subjects = new LinkedList<Candidate>();
+    private SubjectWindow<Candidate> subjects;
     private Map<Candidate, Behavior> evaluated = new HashMap<Candidate, Behavior>();
     private Map<Candidate, Behavior> archive = new HashMap<Candidate, Behavior>();
-    private KDTree<Candidate> behaviorTree;
+    private Map<Candidate, Boolean> restored = new HashMap<Candidate, Boolean>();
+    private int restoredArchiveSize = 0;
+    private File archiveFile = null;
+    private int archiveSaveInterval = DEFAULT_ARCHIVE_SAVE_INTERVAL;
+    private int scoreCalls = 0;
+    private BehaviorIndex<Candidate> behaviorIndex;
+    private BehaviorStore<Candidate> behaviorStore;
     private int k = DEFAULT_KNN_VALUE;
     private int minNovelty = DEFAULT_MIN_NOVELTY;
     private int maxNovelty = DEFAULT_MAX_NOVELTY;
@@ -39,21 +53,113 @@ public abstract class DomainNoveltyMetric<Behavior> {
     private int adjustmentRate = DEFAULT_THRESHOLD_ADJUSTMENT_VALUE;
     private int maxArchiveSize = DEFAULT_MAX_ARCHIVE_SIZE;
     private int dimensions = DEFAULT_BEHAVOR_SPACE_DIMENSIONALITY;
+    private double rebalanceRatio = DEFAULT_INDEX_REBALANCE_RATIO;
+    private boolean parallelScoring = DEFAULT_PARALLEL_SCORING;
+    private int scoringThreads = DEFAULT_SCORING_THREADS;
+    private ForkJoinPool scoringPool = null;
+    private int recallSampleSize = DEFAULT_RECALL_SAMPLE_SIZE;
+    private long recallHits = 0;
+    private long recallNeighbors = 0;
     private long timer = 0;
+    private final AtomicLong queryNanos = new AtomicLong();
+    private NoveltyMetricStatistics statistics;
 
     public DomainNoveltyMetric(Properties props) {
+        this(props, props.getIntProperty(BEHAVOR_SPACE_DIMENSIONALITY_KEY, DEFAULT_BEHAVOR_SPACE_DIMENSIONALITY));
+    }
+
+    /**
+     * @param props The novelty properties
+     * @param behaviorSpaceDimensionality The length of each behavior vector, for
+     * domains that derive it from their own settings rather than from property
+     * <code>novelty.behavior.space.dimensionality</code>
+     */
+    protected DomainNoveltyMetric(Properties props, int behaviorSpaceDimensionality) {
         k = props.getIntProperty(KNN_VALUE_KEY, DEFAULT_KNN_VALUE);
         minNovelty = props.getIntProperty(MIN_NOVELTY_KEY, DEFAULT_MIN_NOVELTY);
         maxNovelty = props.getIntProperty(MAX_NOVELTY_KEY, DEFAULT_MAX_NOVELTY);
         threshold = props.getDoubleProperty(INITIAL_THRESHOLD_VALUE_KEY, DEFAULT_INITIAL_THRESHOLD);
         adjustmentRate = props.getIntProperty(THRESHOLD_ADJUSTMENT_KEY, DEFAULT_THRESHOLD_ADJUSTMENT_VALUE);
         maxArchiveSize = props.getIntProperty(MAX_ARCHIVE_SIZE_KEY, DEFAULT_MAX_ARCHIVE_SIZE);
-        dimensions = props.getIntProperty(BEHAVOR_SPACE_DIMENSIONALITY_KEY, DEFAULT_BEHAVOR_SPACE_DIMENSIONALITY);
-        behaviorTree = new KDTree<Candidate>(dimensions + 1);
+        dimensions = behaviorSpaceDimensionality;
+        rebalanceRatio = props.getDoubleProperty(INDEX_REBALANCE_RATIO_KEY, DEFAULT_INDEX_REBALANCE_RATIO);
+        subjects = new SubjectWindow<Candidate>(maxArchiveSize, new SubjectWindow.EvictionListener<Candidate>() {
+            @Override
+            public void evicted(Candidate subject) {
+                // Drop the oldest (LRU) subject from the behaviorIndex
+                // in place rather than rebuilding the index.
+                evaluated.remove(subject);
+                archive.remove(subject);
+                forgetRestored(subject);
+                behaviorIndex.delete(subject);
+                behaviorStore.remove(subject);
+            }
+        });
+        behaviorIndex = createBehaviorIndex(props);
+        behaviorStore = new BehaviorStore<Candidate>(dimensions + 1);
+        parallelScoring = props.getBooleanProperty(PARALLEL_SCORING_KEY, DEFAULT_PARALLEL_SCORING);
+        scoringThreads = props.getIntProperty(SCORING_THREADS_KEY, DEFAULT_SCORING_THREADS);
+        recallSampleSize = props.getIntProperty(RECALL_SAMPLE_SIZE_KEY, DEFAULT_RECALL_SAMPLE_SIZE);
+        statistics = new NoveltyMetricStatistics(behaviorIndex.getClass().getSimpleName());
+        if (props.getBooleanProperty(JMX_ENABLED_KEY, DEFAULT_JMX_ENABLED)) {
+            statistics.register(getClass().getSimpleName());
+        }
+
+        String archivePath = props.getProperty(ARCHIVE_FILE_KEY, null);
+        archiveSaveInterval = props.getIntProperty(ARCHIVE_SAVE_INTERVAL_KEY, DEFAULT_ARCHIVE_SAVE_INTERVAL);
+        if (archivePath != null && archivePath.length() > 0) {
+            archiveFile = new File(archivePath);
+            if (archiveFile.exists()) {
+                try {
+                    int loaded = loadArchive(archiveFile);
+                    Logger.getLogger(DomainNoveltyMetric.class.getName()).log(Level.INFO,
+                            "NoveltyMetric: restored {0} behaviors from {1}", new Object[]{loaded, archiveFile});
+                } catch (IOException ex) {
+                    Logger.getLogger(DomainNoveltyMetric.class.getName()).log(Level.SEVERE, null, ex);
+                }
+            }
+        }
     }
 
     public abstract BehaviorVector computeBehaviorVector(Behavior aBehavior);
 
+    /**
+     * Creates the index used to find the nearest neighbors of a behavior.  Set
+     * by property <code>novelty.index.type</code>; the values <code>kdtree</code>,
+     * <code>flat</code>, <code>lsh</code> and <code>auto</code> are currently
+     * supported.  <code>lsh</code> is approximate: it trades a little recall for
+     * faster queries in high dimensional behavior spaces, and is tuned by the
+     * <code>novelty.index.lsh.*</code> properties.  <code>auto</code> uses the flat, brute force index when the archive can
+     * never grow past <code>novelty.index.flat.max.size</code>, or when the
+     * behavior space has too many dimensions for a KD-tree to prune, and the
+     * KD-tree otherwise.  This method is called from the constructor.
+     *
+     * @param props The novelty properties
+     * @return A new, empty index with one extra dimension for the candidate ID
+     */
+    protected BehaviorIndex<Candidate> createBehaviorIndex(Properties props) {
+        String type = props.getProperty(INDEX_TYPE_KEY, DEFAULT_INDEX_TYPE);
+        int flatMaxSize = props.getIntProperty(FLAT_INDEX_MAX_SIZE_KEY, DEFAULT_FLAT_INDEX_MAX_SIZE);
+
+        if (type.equalsIgnoreCase("flat")) {
+            return new FlatBehaviorIndex<Candidate>(dimensions + 1);
+        }
+        if (type.equalsIgnoreCase("kdtree")) {
+            return new KDTreeBehaviorIndex<Candidate>(dimensions + 1, rebalanceRatio);
+        }
+        if (type.equalsIgnoreCase("lsh")) {
+            return new LshBehaviorIndex<Candidate>(dimensions + 1,
+                    props.getIntProperty(LSH_TABLES_KEY, DEFAULT_LSH_TABLES),
+                    props.getIntProperty(LSH_HASHES_KEY, DEFAULT_LSH_HASHES),
+                    props.getDoubleProperty(LSH_BUCKET_WIDTH_KEY, DEFAULT_LSH_BUCKET_WIDTH),
+                    props.getLongProperty(LSH_SEED_KEY, DEFAULT_LSH_SEED));
+        }
+        if (maxArchiveSize <= flatMaxSize || dimensions + 1 > KDTREE_MAX_DIMENSIONS) {
+            return new FlatBehaviorIndex<Candidate>(dimensions + 1);
+        }
+        return new KDTreeBehaviorIndex<Candidate>(dimensions + 1, rebalanceRatio);
+    }
+
     /**
      * This private method differentiates candidates that have the same behavior
      * by adding an additional dimension to the behavior vector that is based on
@@ -64,6 +170,9 @@ public abstract class DomainNoveltyMetric<Behavior> {
      * the overall distance between behaviors.  Furthermore, this additional dimension
      * can be recreated because it was seeded by a known value, i.e. the candidate ID.
      * 
+     * Behaviors do not change once evaluated, so the expanded vector is computed
+     * once, when the subject enters the behaviorIndex, and kept in the behaviorStore.
+     * 
      * @param subject The @link<Candidate> that created a behavior
      * @param aBehavior The behavior of the @link<Candidate>
      * @return The expanded behavior vector with one additional dimension
@@ -78,148 +187,414 @@ public abstract class DomainNoveltyMetric<Behavior> {
 
     public void score(Map<Candidate, Behavior> population) {
         long start = System.currentTimeMillis();
+        long startNanos = System.nanoTime();
+        int admissions = 0;
 
         double[] location;
         double score;
 
-        // Calling removeAll and then addAll keeps 
-        // duplicates from entering the subject list.
-        // Additionally, this approach keeps the newest
-        // individuals at the end of the linked list.
-        subjects.removeAll(population.keySet());
-        subjects.addAll(population.keySet());
-        
-        while (subjects.size() > maxArchiveSize) {
-        	// Remove the oldest (LRU) subject
-            subjects.removeFirst();
-        }
-        
-        // Remove evaluated individuals if they are not in the population.
-        // evaluated.keySet().retainAll(population.keySet());
-        evaluated.keySet().retainAll(subjects);
-        archive.keySet().retainAll(subjects);
-        rebuildBehaivorTree();
-
-        // Add new members to the behiavorTree and the evaluated list.
+        // Touching the population keeps duplicates from entering the
+        // subject window and moves the newest individuals to its end.
+        // Trimming the window evicts the oldest (LRU) subjects.
+        int evictions = subjects.touchAll(population.keySet());
+
+        // Add new members to the behaviorIndex and the evaluated list.
         for (Candidate subject : population.keySet()) {
-            if (!evaluated.containsKey(subject) && !archive.containsKey(subject)) {
+            if (restored.containsKey(subject) && !matchesRestored(subject, population.get(subject))) {
+                // Drop the stale location; the subject is indexed below as a new one
+                behaviorIndex.delete(subject);
+                behaviorStore.remove(subject);
+                forgetRestored(subject);
+            }
+            if (restored.containsKey(subject)) {
+                // A restored subject is already indexed; only its behavior was missing
+                (restored.get(subject) ? archive : evaluated).put(subject, population.get(subject));
+                forgetRestored(subject);
+            } else if (!evaluated.containsKey(subject) && !archive.containsKey(subject)) {
                 try {
                     location = computeBehaviorVector(subject, population.get(subject));
-                    behaviorTree.insert(location, subject);
-                    evaluated.put(subject, population.get(subject));
-                    evaluations++;
-                } catch (KeySizeException ex) {
+                    if (behaviorIndex.insert(subject, location)) {
+                        behaviorStore.put(subject, location);
+                        evaluated.put(subject, population.get(subject));
+                        evaluations++;
+                    }
+                } catch (IllegalArgumentException ex) {
                     Logger.getLogger(DomainNoveltyMetric.class.getName()).log(Level.SEVERE, null, ex);
-                } catch (KeyDuplicateException ex) {
-                    // Do nothing
                 }
             }
         }
 
-        // Compute the novelty score for each individual in the population
-        for (Candidate subject : population.keySet()) {
-            try {
+        // Find the nearest neighbors of each individual in the population.  The
+        // queries only read the behaviorIndex, so they may run in parallel.
+        List<Candidate> members = new ArrayList<Candidate>(population.keySet());
+        double[] distances = new double[members.size()];
+        int[] neighbors = new int[members.size()];
+        queryNanos.set(0);
+        if (parallelScoring && members.size() > SCORING_SPLIT_SIZE) {
+            getScoringPool().invoke(new NeighborDistanceTask(members, population, distances, neighbors, 0, members.size()));
+        } else {
+            sumNeighborDistances(members, population, distances, neighbors, 0, members.size());
+        }
+        if (recallSampleSize > 0) {
+            measureRecall(members);
+        }
 
-                location = computeBehaviorVector(subject, population.get(subject));
-
-                score = 0.0;
-                Collection<Candidate> nearestNeighbors = behaviorTree.nearest(location, k);
-                if (nearestNeighbors.isEmpty()) {
-                    score = threshold;
-                } else {
-                    double[] other;
-                    for (Candidate neighbor : nearestNeighbors) {
-                        if (evaluated.containsKey(neighbor)) {
-                            other = computeBehaviorVector(neighbor, evaluated.get(neighbor));
-                        } else {
-                            other = computeBehaviorVector(neighbor, archive.get(neighbor));
-                        }
-                        score += distEuclidian(location, other);
-                    }
-                }
-                score /= nearestNeighbors.size();
-                score = Math.max(Math.min(score, maxNovelty - 1), minNovelty);
-                subject.setNoveltyValue((int) Math.round(score));
-
-                // Add this point to the archive if it exceeds the novelty threshold
-                // and the Chromosome is not already in the archive
-                if (score >= threshold) {
-                    if (!archive.containsKey(subject)) {
-                        // Rather than putting it into the behaviorTree, removing it
-                        // from the evaluated list keeps it in the behaivorTree.
-                        archive.put(subject, evaluated.remove(subject));                        
-                        newArchiveMembers++;
-                    }
+        // Compute the novelty score for each individual in the population.
+        // Archive admissions and threshold adjustments are applied in order, so
+        // the results are identical with or without parallel scoring.
+        for (int i = 0; i < members.size(); i++) {
+            Candidate subject = members.get(i);
+            if (neighbors[i] < 0) {
+                // The neighbor query failed and has already been logged
+                continue;
+            }
+
+            score = (neighbors[i] == 0) ? threshold : distances[i];
+            score /= neighbors[i];
+            score = Math.max(Math.min(score, maxNovelty - 1), minNovelty);
+            subject.setNoveltyValue((int) Math.round(score));
+
+            // Add this point to the archive if it exceeds the novelty threshold
+            // and the Chromosome is not already in the archive
+            if (score >= threshold) {
+                if (!archive.containsKey(subject)) {
+                    // Rather than putting it into the behaviorIndex, removing it
+                    // from the evaluated list keeps it in the behaviorIndex.
+                    archive.put(subject, evaluated.remove(subject));                        
+                    newArchiveMembers++;
+                    admissions++;
                 }
+            }
 
-                // Novelty Metric Maintenance
-                if (evaluations > adjustmentRate) {
-                    if (newArchiveMembers == 0) {
-                        threshold -= 0.05 * threshold;
-                    }
-                    if (newArchiveMembers > 4) {
-                        threshold += 0.05 * threshold;
-                    }
-                    newArchiveMembers = 0;
-                    evaluations = 0;
-//                    System.out.println("INFO  NoveltyMetric: [time elapsed == " + timer + "mS] [archive size == " + archive.size() + "] [threshold == " + Math.round(threshold * 100) / 100.0 + "]");
+            // Novelty Metric Maintenance
+            if (evaluations > adjustmentRate) {
+                if (newArchiveMembers == 0) {
+                    threshold -= 0.05 * threshold;
                 }
-            } catch (KeySizeException ex) {
+                if (newArchiveMembers > 4) {
+                    threshold += 0.05 * threshold;
+                }
+                newArchiveMembers = 0;
+                evaluations = 0;
+//                System.out.println("INFO  NoveltyMetric: [time elapsed == " + timer + "mS] [archive size == " + archive.size() + "] [threshold == " + Math.round(threshold * 100) / 100.0 + "]");
+            }
+        }
+        timer = System.currentTimeMillis() - start;
+        recordStatistics(System.nanoTime() - startNanos, members.size(), admissions, evictions);
+
+        if (archiveFile != null && archiveSaveInterval > 0 && ++scoreCalls % archiveSaveInterval == 0) {
+            try {
+                saveArchive(archiveFile);
+            } catch (IOException ex) {
                 Logger.getLogger(DomainNoveltyMetric.class.getName()).log(Level.SEVERE, null, ex);
+            }
+        }
+//        System.out.println("INFO  NoveltyMetric: [time elapsed == " + timer + "mS] [archive size == " + archive.size() + "] [threshold == " + Math.round(threshold * 100) / 100.0 + "]");
+    }
+
+    /**
+     * Sums the distances from each member in the range [from, to) to its k
+     * nearest neighbors in the behaviorIndex.  Neighbor counts are recorded so
+     * the caller can average the sums; a count of -1 marks a failed query.
+     * This method reads, but never modifies, the index and the store.
+     */
+    private void sumNeighborDistances(List<Candidate> members, Map<Candidate, Behavior> population,
+            double[] distances, int[] neighbors, int from, int to) {
+        double[] query = new double[dimensions + 1];
+        double[] location;
+        long elapsed = 0;
+        for (int i = from; i < to; i++) {
+            Candidate subject = members.get(i);
+            try {
+                location = behaviorStore.copy(subject, query);
+                if (location == null) {
+                    // Only subjects rejected as duplicates are missing from the store
+                    location = computeBehaviorVector(subject, population.get(subject));
+                }
+
+                double sum = 0.0;
+                long queryStart = System.nanoTime();
+                Collection<Candidate> nearestNeighbors = behaviorIndex.nearest(location, k);
+                elapsed += System.nanoTime() - queryStart;
+                for (Candidate neighbor : nearestNeighbors) {
+                    sum += behaviorStore.distance(location, neighbor);
+                }
+                distances[i] = sum;
+                neighbors[i] = nearestNeighbors.size();
             } catch (IllegalArgumentException ex) {
                 Logger.getLogger(DomainNoveltyMetric.class.getName()).log(Level.SEVERE, null, ex);
+                neighbors[i] = -1;
             }
         }
-        timer = System.currentTimeMillis() - start;
-//        System.out.println("INFO  NoveltyMetric: [time elapsed == " + timer + "mS] [archive size == " + archive.size() + "] [threshold == " + Math.round(threshold * 100) / 100.0 + "]");
+        queryNanos.addAndGet(elapsed);
     }
 
-    public double getNoveltyThreshold() {
-        return threshold;
+    private void recordStatistics(long scoreNanos, int queries, int admissions, int evictions) {
+        int rebuilds = 0;
+        long rebuildNanos = 0;
+        if (behaviorIndex instanceof KDTreeBehaviorIndex) {
+            rebuilds = ((KDTreeBehaviorIndex<?>) behaviorIndex).getRebuildCount();
+            rebuildNanos = ((KDTreeBehaviorIndex<?>) behaviorIndex).getRebuildTime();
+        }
+        statistics.recordScore(scoreNanos, queries, queryNanos.get(), admissions, evictions,
+                threshold, behaviorIndex.size(), getArchiveSize(), rebuilds, rebuildNanos);
     }
 
-    public void setNoveltyThreshold(double aNewNoveltyThreshold) {
-        threshold = Math.max(aNewNoveltyThreshold, 0.0);
+    /**
+     * Compares the neighbors returned by the behaviorIndex with the exact k
+     * nearest neighbors for an evenly spaced sample of the population, and
+     * logs the recall.  Set by property <code>novelty.index.recall.sample</code>,
+     * the number of members sampled each generation; zero disables it.
+     */
+    private void measureRecall(List<Candidate> members) {
+        int step = Math.max(members.size() / recallSampleSize, 1);
+        int hits = 0;
+        int expected = 0;
+        double[] query = new double[dimensions + 1];
+        for (int i = 0; i < members.size() && i / step < recallSampleSize; i += step) {
+            double[] location = behaviorStore.copy(members.get(i), query);
+            if (location == null) {
+                continue;
+            }
+            Set<Candidate> exact = new HashSet<Candidate>(behaviorStore.nearest(location, k));
+            for (Candidate neighbor : behaviorIndex.nearest(location, k)) {
+                if (exact.contains(neighbor)) {
+                    hits++;
+                }
+            }
+            expected += exact.size();
+        }
+        recallHits += hits;
+        recallNeighbors += expected;
+        if (expected > 0) {
+            Logger.getLogger(DomainNoveltyMetric.class.getName()).log(Level.INFO,
+                    "NoveltyMetric: [recall == {0}] [mean recall == {1}] [index == {2}]",
+                    new Object[]{Math.round(1000.0 * hits / expected) / 1000.0,
+                        Math.round(1000.0 * getIndexRecall()) / 1000.0,
+                        behaviorIndex.getClass().getSimpleName()});
+        }
     }
 
-    public int getArchiveSize() {
-        return archive.size();
+    /**
+     * Writes the behavior vector, chromosome ID and archive membership of every
+     * indexed subject, oldest first, along with the novelty threshold, to a
+     * {@link NoveltyArchiveFile}.  Set by property <code>novelty.archive.file</code>,
+     * the archive is also saved every <code>novelty.archive.save.interval</code>
+     * calls to score().
+     *
+     * @param file The archive file
+     * @throws IOException if the file cannot be written
+     */
+    public void saveArchive(File file) throws IOException {
+        int length = dimensions + 1;
+        int n = behaviorStore.size();
+        long[] ids = new long[n];
+        boolean[] archived = new boolean[n];
+        double[] vectors = new double[n * length];
+        double[] location = new double[length];
+        int count = 0;
+        for (Candidate subject : subjects.getSubjects()) {
+            if (count < n && behaviorStore.copy(subject, location) != null) {
+                ids[count] = subject.getId();
+                archived[count] = archive.containsKey(subject) || Boolean.TRUE.equals(restored.get(subject));
+                System.arraycopy(location, 0, vectors, count * length, length);
+                count++;
+            }
+        }
+        NoveltyArchiveFile.write(file, length, threshold, evaluations, newArchiveMembers,
+                Arrays.copyOf(ids, count), Arrays.copyOf(archived, count), Arrays.copyOf(vectors, count * length));
     }
 
-    private void rebuildBehaivorTree() {
-        double[] location;
-        behaviorTree = new KDTree<Candidate>(dimensions + 1);
+    /**
+     * Restores the newest subjects of a {@link NoveltyArchiveFile}, up to the
+     * maximum archive size, into the behaviorIndex along with the novelty
+     * threshold.  The restored subjects are known only by their chromosome IDs,
+     * so they serve as neighbors without being simulated again.  This is meant
+     * for a new metric, before the first call to score(), and is called from
+     * the constructor when <code>novelty.archive.file</code> exists.
+     *
+     * @param file The archive file
+     * @return The number of subjects restored
+     * @throws IOException if the file cannot be read or has the wrong dimensionality
+     */
+    public int loadArchive(File file) throws IOException {
+        NoveltyArchiveFile saved = NoveltyArchiveFile.open(file);
         try {
-            for (Candidate subject : archive.keySet()) {
-                location = computeBehaviorVector(subject, archive.get(subject));
-                behaviorTree.insert(location, subject);
+            return restore(saved, file);
+        } finally {
+            // The records are copied into the index, and a mapped file could
+            // not be replaced by the next save
+            saved.close();
+        }
+    }
+
+    private int restore(NoveltyArchiveFile saved, File file) throws IOException {
+        if (saved.getDimensions() != dimensions + 1) {
+            throw new IOException("Expected a novelty archive with " + (dimensions + 1)
+                    + " dimensions, found " + saved.getDimensions() + " in " + file);
+        }
+        double[] location = new double[dimensions + 1];
+        int loaded = 0;
+        for (int i = Math.max(saved.size() - maxArchiveSize, 0); i < saved.size(); i++) {
+            Candidate subject = Candidate.forId(saved.getId(i));
+            if (subjects.contains(subject)) {
+                continue;
             }
-            for (Candidate subject : evaluated.keySet()) {
-                location = computeBehaviorVector(subject, evaluated.get(subject));
-                behaviorTree.insert(location, subject);
+            saved.copy(i, location);
+            if (behaviorIndex.insert(subject, location)) {
+                behaviorStore.put(subject, location);
+                restored.put(subject, saved.isArchived(i));
+                if (saved.isArchived(i)) {
+                    restoredArchiveSize++;
+                }
+                subjects.touch(subject);
+                loaded++;
             }
-            
-        } catch (KeySizeException ex) {
-            Logger.getLogger(DomainNoveltyMetric.class.getName()).log(Level.SEVERE, null, ex);
-        } catch (KeyDuplicateException ex) {
+        }
+        subjects.trim();
+        threshold = saved.getThreshold();
+        evaluations = saved.getEvaluations();
+        newArchiveMembers = saved.getNewArchiveMembers();
+        return loaded;
+    }
+
+    /**
+     * A restored subject is known only by its chromosome ID.  A resumed run
+     * that reuses IDs, or that encodes behaviors with other settings, can
+     * give that ID to a subject whose behavior differs from the saved one.
+     *
+     * @return <code>true</code> if the subject's behavior gives the location
+     * restored for its ID
+     */
+    private boolean matchesRestored(Candidate subject, Behavior behavior) {
+        try {
+            double[] location = computeBehaviorVector(subject, behavior);
+            if (Arrays.equals(location, behaviorStore.copy(subject, new double[dimensions + 1]))) {
+                return true;
+            }
+            Logger.getLogger(DomainNoveltyMetric.class.getName()).log(Level.WARNING,
+                    "NoveltyMetric: the behavior of subject {0} differs from the one restored for its ID; reindexing it",
+                    subject.getId());
+        } catch (IllegalArgumentException ex) {
             Logger.getLogger(DomainNoveltyMetric.class.getName()).log(Level.SEVERE, null, ex);
         }
+        return false;
     }
 
-    private double distEuclidian(double[] a, double[] b) {
-        double dist = 0;
-        if (a.length == b.length) {
-            for (int i = 0; i < a.length; i++) {
-                dist += (a[i] - b[i]) * (a[i] - b[i]);
+    private void forgetRestored(Candidate subject) {
+        Boolean archived = restored.remove(subject);
+        if (archived != null && archived) {
+            restoredArchiveSize--;
+        }
+    }
+
+    private synchronized ForkJoinPool getScoringPool() {
+        if (scoringPool == null) {
+            int threads = scoringThreads > 0 ? scoringThreads : Runtime.getRuntime().availableProcessors();
+            scoringPool = new ForkJoinPool(threads);
+        }
+        return scoringPool;
+    }
+
+    /**
+     * Splits the neighbor queries of a population across the scoring pool.
+     */
+    private class NeighborDistanceTask extends RecursiveAction {
+
+        private final List<Candidate> members;
+        private final Map<Candidate, Behavior> population;
+        private final double[] distances;
+        private final int[] neighbors;
+        private final int from, to;
+
+        NeighborDistanceTask(List<Candidate> members, Map<Candidate, Behavior> population,
+                double[] distances, int[] neighbors, int from, int to) {
+            this.members = members;
+            this.population = population;
+            this.distances = distances;
+            this.neighbors = neighbors;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= SCORING_SPLIT_SIZE) {
+                sumNeighborDistances(members, population, distances, neighbors, from, to);
+            } else {
+                int mid = (from + to) >>> 1;
+                invokeAll(new NeighborDistanceTask(members, population, distances, neighbors, from, mid),
+                        new NeighborDistanceTask(members, population, distances, neighbors, mid, to));
             }
         }
-        return Math.sqrt(dist);
+
+        private static final long serialVersionUID = 1L;
+    }
+
+    /**
+     * @return The timing and index health counters, which are also registered
+     * over JMX unless property <code>novelty.jmx</code> is false.
+     */
+    public NoveltyMetricStatistics getStatistics() {
+        return statistics;
+    }
+
+    public double getNoveltyThreshold() {
+        return threshold;
+    }
+
+    public void setNoveltyThreshold(double aNewNoveltyThreshold) {
+        threshold = Math.max(aNewNoveltyThreshold, 0.0);
+    }
+
+    /**
+     * @return The number of archived subjects, including those restored from
+     * an archive file.
+     */
+    public int getArchiveSize() {
+        return archive.size() + restoredArchiveSize;
+    }
+
+    /**
+     * @return The number of nearest neighbors averaged into a novelty score.
+     */
+    public int getKnnValue() {
+        return k;
+    }
+
+    /**
+     * @return The number of subjects kept in the sliding window of archived and
+     * evaluated behaviors.
+     */
+    public int getMaxArchiveSize() {
+        return maxArchiveSize;
+    }
+
+    /**
+     * @return The dimensionality of the behavior space, excluding the dimension
+     * added for the candidate ID.
+     */
+    public int getBehaviorSpaceDimensionality() {
+        return dimensions;
+    }
+
+    /**
+     * @return The fraction of the exact k nearest neighbors returned by the
+     * behaviorIndex over every sampled query so far, or <code>NaN</code> if
+     * recall is not being measured.
+     */
+    public double getIndexRecall() {
+        return recallNeighbors == 0 ? Double.NaN : (double) recallHits / recallNeighbors;
     }
 
     public Collection<Behavior> getEvaluatedBehaviors() {
         return evaluated.values();
     }
     
+    /**
+     * @return The behaviors of the archived subjects; subjects restored from an
+     * archive file have no behavior until they are scored again.
+     */
     public Collection<Behavior> getArchivedBehaviors() {
         return archive.values();
     }
@@ -228,14 +603,41 @@ public abstract class DomainNoveltyMetric<Behavior> {
     private static String INITIAL_THRESHOLD_VALUE_KEY = "novelty.archive.threshold.initial";
     private static String THRESHOLD_ADJUSTMENT_KEY = "novelty.archive.threshold.adjust";
     private static String MAX_ARCHIVE_SIZE_KEY = "novelty.archive.max.size";
-    private static String BEHAVOR_SPACE_DIMENSIONALITY_KEY = "novelty.behavior.space.dimensionality";
+    protected static final String BEHAVOR_SPACE_DIMENSIONALITY_KEY = "novelty.behavior.space.dimensionality";
     private static String MIN_NOVELTY_KEY = "novelty.min.score";
     private static String MAX_NOVELTY_KEY = "novelty.max.score";
     private static Integer DEFAULT_KNN_VALUE = 15;
     private static Double DEFAULT_INITIAL_THRESHOLD = 3.0;
     private static Integer DEFAULT_THRESHOLD_ADJUSTMENT_VALUE = 15;
     private static Integer DEFAULT_MAX_ARCHIVE_SIZE = 500;
-    private static Integer DEFAULT_BEHAVOR_SPACE_DIMENSIONALITY = 2;
+    protected static final int DEFAULT_BEHAVOR_SPACE_DIMENSIONALITY = 2;
     private static Integer DEFAULT_MIN_NOVELTY = 1;
     private static Integer DEFAULT_MAX_NOVELTY = 300;
+    private static String INDEX_REBALANCE_RATIO_KEY = "novelty.index.rebalance.ratio";
+    private static Double DEFAULT_INDEX_REBALANCE_RATIO = 0.5;
+    protected static final String INDEX_TYPE_KEY = "novelty.index.type";
+    private static String DEFAULT_INDEX_TYPE = "auto";
+    private static String FLAT_INDEX_MAX_SIZE_KEY = "novelty.index.flat.max.size";
+    private static Integer DEFAULT_FLAT_INDEX_MAX_SIZE = 4096;
+    private static final int KDTREE_MAX_DIMENSIONS = 10;
+    private static String PARALLEL_SCORING_KEY = "novelty.parallel";
+    private static String SCORING_THREADS_KEY = "novelty.parallel.threads";
+    private static Boolean DEFAULT_PARALLEL_SCORING = false;
+    private static Integer DEFAULT_SCORING_THREADS = 0;
+    private static final int SCORING_SPLIT_SIZE = 16;
+    private static String LSH_TABLES_KEY = "novelty.index.lsh.tables";
+    private static String LSH_HASHES_KEY = "novelty.index.lsh.hashes";
+    private static String LSH_BUCKET_WIDTH_KEY = "novelty.index.lsh.bucket.width";
+    private static String LSH_SEED_KEY = "novelty.index.lsh.seed";
+    private static Integer DEFAULT_LSH_TABLES = 10;
+    private static Integer DEFAULT_LSH_HASHES = 4;
+    private static Double DEFAULT_LSH_BUCKET_WIDTH = 150.0;
+    private static Long DEFAULT_LSH_SEED = 0L;
+    private static String ARCHIVE_FILE_KEY = "novelty.archive.file";
+    private static String ARCHIVE_SAVE_INTERVAL_KEY = "novelty.archive.save.interval";
+    private static Integer DEFAULT_ARCHIVE_SAVE_INTERVAL = 25;
+    private static String JMX_ENABLED_KEY = "novelty.jmx";
+    private static Boolean DEFAULT_JMX_ENABLED = true;
+    private static String RECALL_SAMPLE_SIZE_KEY = "novelty.index.recall.sample";
+    private static Integer DEFAULT_RECALL_SAMPLE_SIZE = 0;
 }
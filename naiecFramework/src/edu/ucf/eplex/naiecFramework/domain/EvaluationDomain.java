@@ -30,10 +30,18 @@ public abstract class EvaluationDomain<Result> implements Configurable {
     protected Map<Candidate, EvaluationPanel> evaluationPanels = new HashMap<Candidate, EvaluationPanel>();
     protected Map<EvaluationPanel, Result> simulations = new HashMap<EvaluationPanel, Result>();
     protected Map<Candidate, Result> population = new HashMap<Candidate, Result>();
-    protected LinkedList<Candidate> subjects = new LinkedList<Candidate>();
+    protected SubjectWindow<Candidate> subjects = new SubjectWindow<Candidate>(MAX_SUBJECTS, new SubjectWindow.EvictionListener<Candidate>() {
+        @Override
+        public void evicted(Candidate subject) {
+            population.remove(subject);
+        }
+    });
+    // Subjects given a result in population without being in the subject window
+    private final Set<Candidate> untrackedSubjects = new HashSet<Candidate>();
     private volatile int timeStep = 0;
     private NaiecDomainProperties f_properties;
     
+    protected static final int MAX_SUBJECTS = 500;
     protected final boolean DEFAULT_VIEWER = false;
     protected boolean viewerEnabled = DEFAULT_VIEWER;
 
@@ -44,13 +52,9 @@ public abstract class EvaluationDomain<Result> implements Configurable {
     }
     
     public final void setCandidates(List<Candidate> candidates) {
-        subjects.addAll(candidates);
-        while (subjects.size() > 500) {
-            subjects.removeFirst();
-        }
-                
         System.out.println("population size before == " + population.size());
-        population.keySet().retainAll(subjects);
+        subjects.touchAll(candidates);
+        dropUntrackedResults();
         System.out.println("population size after  == " + population.size());
         for (Candidate subject : candidates) {
             if (population.containsKey(subject)) {
@@ -67,13 +71,8 @@ public abstract class EvaluationDomain<Result> implements Configurable {
      * @param candidates 
      */
     public void setUserEvaluatedCandidates(List<Candidate> candidates) {
-        subjects.removeAll(candidates);
-        subjects.addAll(candidates);
-        while (subjects.size() > 500) {
-            subjects.removeFirst();
-        }
-
-        population.keySet().retainAll(subjects);
+        subjects.touchAll(candidates);
+        dropUntrackedResults();
         simulations.clear();
 
         // assign each chromosome to a panel, matching the order of candidates with panels
@@ -88,12 +87,42 @@ public abstract class EvaluationDomain<Result> implements Configurable {
             }
             
             Result result = allUserEvaluatedSubjects.get(subject);
-            population.put(subject, result);
+            putResult(subject, result);
             simulations.put(panel, result);
         }
         setCurrentTimeStep(0);
     }
     
+    /**
+     * Records a subject's result in the population.  A subject outside the
+     * subject window, e.g. one evaluated by <code>Evolver.evaluateFitness</code>,
+     * is noted so that its result is dropped at the next window update unless
+     * the update brings it into the window.
+     *
+     * @param subject The evaluated subject
+     * @param result The subject's result
+     */
+    protected void putResult(Candidate subject, Result result) {
+        population.put(subject, result);
+        if (!subjects.contains(subject)) {
+            untrackedSubjects.add(subject);
+        }
+    }
+
+    /**
+     * Evicted subjects are dropped from the population by the subject window;
+     * this drops the results of subjects evaluated outside the window since
+     * the last update, so the population holds only subjects in the window.
+     */
+    private void dropUntrackedResults() {
+        for (Candidate subject : untrackedSubjects) {
+            if (!subjects.contains(subject)) {
+                population.remove(subject);
+            }
+        }
+        untrackedSubjects.clear();
+    }
+
     /**
      * 
      */
@@ -252,6 +281,16 @@ public abstract class EvaluationDomain<Result> implements Configurable {
      */
     public abstract int getNoveltyArchiveSize();
 
+    /**
+     * Reports the timing and index health of the domain's novelty metric.
+     *
+     * @return The novelty metric statistics, or <code>null</code> if the domain
+     * has no novelty metric.
+     */
+    public NoveltyMetricStatistics getNoveltyStatistics() {
+        return null;
+    }
+
     /**
      * 
      * @return 
@@ -0,0 +1,252 @@
+/**
+ * This software is a work of the U.S. Government. It is not subject to copyright
+ * protection and is in the public domain. It may be used as-is or modified and
+ * re-used. The author and the Air Force Institute of Technology would appreciate
+ * credit if this software or parts of it are used or modified for re-use.
+ */
+package edu.ucf.eplex.naiecFramework.domain;
+
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Timing and health counters for a {@link DomainNoveltyMetric}, updated once
+ * per call to score().  Recording costs a few additions, so the statistics are
+ * always collected; they can be read over JMX once registered, or logged with
+ * {@link #getSummary()}.
+ */
+public class NoveltyMetricStatistics implements NoveltyMetricStatisticsMXBean {
+
+    private final String indexType;
+    private long scoreCount = 0;
+    private long lastScoreNanos = 0;
+    private long totalScoreNanos = 0;
+    private final long[] histogram = new long[HISTOGRAM_BUCKETS];
+    private long queryCount = 0;
+    private long totalQueryNanos = 0;
+    private int indexSize = 0;
+    private int archiveSize = 0;
+    private int rebuildCount = 0;
+    private long rebuildNanos = 0;
+    private int lastAdmissions = 0;
+    private long totalAdmissions = 0;
+    private int lastEvictions = 0;
+    private long totalEvictions = 0;
+    private double threshold = 0;
+    private final double[] thresholds = new double[THRESHOLD_HISTORY_SIZE];
+
+    /**
+     * @param indexType The name of the behavior index implementation
+     */
+    public NoveltyMetricStatistics(String indexType) {
+        this.indexType = indexType;
+    }
+
+    /**
+     * Records one call to score().
+     *
+     * @param scoreNanos The duration of the call
+     * @param queries The number of nearest neighbor queries
+     * @param queryNanos The total duration of those queries
+     * @param admissions The number of subjects admitted to the archive
+     * @param evictions The number of subjects evicted from the window
+     * @param aThreshold The novelty threshold after the call
+     * @param anIndexSize The number of indexed behaviors
+     * @param anArchiveSize The number of archived subjects
+     * @param rebuilds The number of index rebuilds so far
+     * @param totalRebuildNanos The total duration of those rebuilds
+     */
+    public synchronized void recordScore(long scoreNanos, int queries, long queryNanos, int admissions,
+            int evictions, double aThreshold, int anIndexSize, int anArchiveSize, int rebuilds, long totalRebuildNanos) {
+        thresholds[(int) (scoreCount % THRESHOLD_HISTORY_SIZE)] = aThreshold;
+        scoreCount++;
+        lastScoreNanos = scoreNanos;
+        totalScoreNanos += scoreNanos;
+        histogram[bucket(scoreNanos / 1000)]++;
+        queryCount += queries;
+        totalQueryNanos += queryNanos;
+        lastAdmissions = admissions;
+        totalAdmissions += admissions;
+        lastEvictions = evictions;
+        totalEvictions += evictions;
+        threshold = aThreshold;
+        indexSize = anIndexSize;
+        archiveSize = anArchiveSize;
+        rebuildCount = rebuilds;
+        rebuildNanos = totalRebuildNanos;
+    }
+
+    /**
+     * Registers these statistics with the platform MBean server, replacing any
+     * statistics already registered under the same name.
+     *
+     * @param name The <code>name</code> key of the MBean's object name
+     */
+    public void register(String name) {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName objectName = new ObjectName(JMX_DOMAIN + ":type=NoveltyMetric,name=" + ObjectName.quote(name));
+            if (server.isRegistered(objectName)) {
+                server.unregisterMBean(objectName);
+            }
+            server.registerMBean(this, objectName);
+        } catch (JMException ex) {
+            Logger.getLogger(NoveltyMetricStatistics.class.getName()).log(Level.SEVERE, null, ex);
+        }
+    }
+
+    /**
+     * @return A one line summary of the last score() call and the totals so far.
+     */
+    public synchronized String getSummary() {
+        return String.format("[score == %.1fmS, mean %.1fmS, p99 <= %.1fmS] [kNN == %.1fuS/query] "
+                + "[index == %s, %d] [archive == %d] [admissions == %d] [evictions == %d] "
+                + "[threshold == %.2f] [rebuilds == %d, %.1fmS]",
+                getLastScoreMillis(), getMeanScoreMillis(), get99thPercentileScoreMillis(), getMeanQueryMicros(),
+                indexType, indexSize, archiveSize, lastAdmissions, lastEvictions,
+                threshold, rebuildCount, getRebuildMillis());
+    }
+
+    @Override
+    public synchronized long getScoreCount() {
+        return scoreCount;
+    }
+
+    @Override
+    public synchronized double getLastScoreMillis() {
+        return lastScoreNanos / 1e6;
+    }
+
+    @Override
+    public synchronized double getMeanScoreMillis() {
+        return scoreCount == 0 ? 0 : totalScoreNanos / 1e6 / scoreCount;
+    }
+
+    @Override
+    public synchronized long[] getScoreLatencyHistogram() {
+        return histogram.clone();
+    }
+
+    @Override
+    public synchronized double getMedianScoreMillis() {
+        return percentileMillis(0.5);
+    }
+
+    @Override
+    public synchronized double get99thPercentileScoreMillis() {
+        return percentileMillis(0.99);
+    }
+
+    @Override
+    public synchronized long getQueryCount() {
+        return queryCount;
+    }
+
+    @Override
+    public synchronized double getMeanQueryMicros() {
+        return queryCount == 0 ? 0 : totalQueryNanos / 1e3 / queryCount;
+    }
+
+    @Override
+    public String getIndexType() {
+        return indexType;
+    }
+
+    @Override
+    public synchronized int getIndexSize() {
+        return indexSize;
+    }
+
+    @Override
+    public synchronized int getArchiveSize() {
+        return archiveSize;
+    }
+
+    @Override
+    public synchronized int getRebuildCount() {
+        return rebuildCount;
+    }
+
+    @Override
+    public synchronized double getRebuildMillis() {
+        return rebuildNanos / 1e6;
+    }
+
+    @Override
+    public synchronized int getLastAdmissions() {
+        return lastAdmissions;
+    }
+
+    @Override
+    public synchronized long getTotalAdmissions() {
+        return totalAdmissions;
+    }
+
+    @Override
+    public synchronized int getLastEvictions() {
+        return lastEvictions;
+    }
+
+    @Override
+    public synchronized long getTotalEvictions() {
+        return totalEvictions;
+    }
+
+    @Override
+    public synchronized double getThreshold() {
+        return threshold;
+    }
+
+    @Override
+    public synchronized double[] getThresholdHistory() {
+        int n = (int) Math.min(scoreCount, THRESHOLD_HISTORY_SIZE);
+        double[] result = new double[n];
+        for (int i = 0; i < n; i++) {
+            result[i] = thresholds[(int) ((scoreCount - n + i) % THRESHOLD_HISTORY_SIZE)];
+        }
+        return result;
+    }
+
+    @Override
+    public synchronized void reset() {
+        scoreCount = 0;
+        lastScoreNanos = 0;
+        totalScoreNanos = 0;
+        Arrays.fill(histogram, 0);
+        queryCount = 0;
+        totalQueryNanos = 0;
+        lastAdmissions = 0;
+        totalAdmissions = 0;
+        lastEvictions = 0;
+        totalEvictions = 0;
+    }
+
+    /**
+     * @return The upper bound of the histogram bucket holding the given
+     * fraction of the score() calls.
+     */
+    private double percentileMillis(double fraction) {
+        long target = (long) Math.ceil(fraction * scoreCount);
+        long seen = 0;
+        for (int i = 0; i < histogram.length; i++) {
+            seen += histogram[i];
+            if (seen >= target && seen > 0) {
+                return (1L << i) / 1e3;
+            }
+        }
+        return 0;
+    }
+
+    private static int bucket(long micros) {
+        return Math.min(64 - Long.numberOfLeadingZeros(Math.max(micros, 0)), HISTOGRAM_BUCKETS - 1);
+    }
+
+    private static final String JMX_DOMAIN = "edu.ucf.eplex.naiecFramework";
+    private static final int HISTOGRAM_BUCKETS = 40;
+    private static final int THRESHOLD_HISTORY_SIZE = 100;
+}
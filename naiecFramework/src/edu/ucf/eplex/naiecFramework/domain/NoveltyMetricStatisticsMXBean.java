@@ -0,0 +1,75 @@
+/**
+ * This software is a work of the U.S. Government. It is not subject to copyright
+ * protection and is in the public domain. It may be used as-is or modified and
+ * re-used. The author and the Air Force Institute of Technology would appreciate
+ * credit if this software or parts of it are used or modified for re-use.
+ */
+package edu.ucf.eplex.naiecFramework.domain;
+
+/**
+ * The JMX view of a {@link NoveltyMetricStatistics}.  Times are reported in
+ * milliseconds, except for the per-query kNN time, which is in microseconds.
+ */
+public interface NoveltyMetricStatisticsMXBean {
+
+    /**
+     * @return The number of calls to score().
+     */
+    public long getScoreCount();
+
+    public double getLastScoreMillis();
+
+    public double getMeanScoreMillis();
+
+    /**
+     * @return The number of score() calls by latency, where bucket i counts the
+     * calls that took less than 2^i microseconds but no less than 2^(i-1).
+     */
+    public long[] getScoreLatencyHistogram();
+
+    /**
+     * @return An upper bound, from the histogram, on the median score() latency.
+     */
+    public double getMedianScoreMillis();
+
+    /**
+     * @return An upper bound, from the histogram, on the 99th percentile of the
+     * score() latency.
+     */
+    public double get99thPercentileScoreMillis();
+
+    public long getQueryCount();
+
+    public double getMeanQueryMicros();
+
+    public String getIndexType();
+
+    public int getIndexSize();
+
+    public int getArchiveSize();
+
+    public int getRebuildCount();
+
+    public double getRebuildMillis();
+
+    public int getLastAdmissions();
+
+    public long getTotalAdmissions();
+
+    public int getLastEvictions();
+
+    public long getTotalEvictions();
+
+    public double getThreshold();
+
+    /**
+     * @return The novelty threshold after each of the most recent score() calls,
+     * oldest first.
+     */
+    public double[] getThresholdHistory();
+
+    /**
+     * Clears the counters and the histogram.
+     */
+    public void reset();
+}
@@ -0,0 +1,79 @@
+/**
+ * This software is a work of the U.S. Government. It is not subject to copyright
+ * protection and is in the public domain. It may be used as-is or modified and
+ * re-used. The author and the Air Force Institute of Technology would appreciate
+ * credit if this software or parts of it are used or modified for re-use.
+ */
+package edu.ucf.eplex.naiecFramework.domain;
+
+import com.anji.neat.ConnectionAllele;
+import com.anji.neat.NeuronAllele;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.jgap.Allele;
+import org.jgap.Chromosome;
+
+/**
+ * The network a chromosome builds, compared by value: its neurons with their
+ * types and activation functions, and its connections with their weights, in
+ * innovation order.  Chromosomes with equal keys build the same network, so
+ * they behave identically however their IDs differ.  The key is a copy, so it
+ * is unaffected if the chromosome is later mutated in place.
+ */
+public final class PhenotypeKey {
+
+    private final long[] genes;
+    private final Object[] types;
+    private final int hash;
+
+    /**
+     * @param chrom The chromosome
+     */
+    public PhenotypeKey(Chromosome chrom) {
+        List<Long> values = new ArrayList<Long>();
+        List<Object> labels = new ArrayList<Object>();
+        for (Allele allele : chrom.getAlleles()) {
+            values.add(allele.getInnovationId());
+            if (allele instanceof ConnectionAllele) {
+                ConnectionAllele conn = (ConnectionAllele) allele;
+                values.add(conn.getSrcNeuronId());
+                values.add(conn.getDestNeuronId());
+                values.add(Double.doubleToLongBits(conn.getWeight()));
+            } else if (allele instanceof NeuronAllele) {
+                NeuronAllele neuron = (NeuronAllele) allele;
+                labels.add(neuron.getType());
+                labels.add(neuron.getActivationType());
+            } else {
+                labels.add(allele.getClass());
+            }
+        }
+        genes = new long[values.size()];
+        for (int i = 0; i < genes.length; i++) {
+            genes[i] = values.get(i);
+        }
+        types = labels.toArray();
+        hash = 31 * Arrays.hashCode(genes) + Arrays.hashCode(types);
+    }
+
+    /**
+     * @return An estimate of the bytes held by the key
+     */
+    public long getMemoryUsage() {
+        return 64 + 8L * genes.length + 8L * types.length;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (!(o instanceof PhenotypeKey)) {
+            return false;
+        }
+        PhenotypeKey other = (PhenotypeKey) o;
+        return hash == other.hash && Arrays.equals(genes, other.genes) && Arrays.equals(types, other.types);
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+}
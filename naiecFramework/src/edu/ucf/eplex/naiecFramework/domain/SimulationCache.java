@@ -0,0 +1,145 @@
+/**
+ * This software is a work of the U.S. Government. It is not subject to copyright
+ * protection and is in the public domain. It may be used as-is or modified and
+ * re-used. The author and the Air Force Institute of Technology would appreciate
+ * credit if this software or parts of it are used or modified for re-use.
+ */
+package edu.ucf.eplex.naiecFramework.domain;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+
+/**
+ * The results of recent simulations, keyed by the simulated network.  A
+ * domain whose simulations are deterministic can look a subject up by its
+ * {@link PhenotypeKey} and reuse the result of any earlier subject with the
+ * same network, e.g. an elite's clone or a subject dropped from the
+ * population and evaluated again, instead of simulating it again.
+ * <p>
+ * Each result is stored with an estimate of the bytes it holds; once the
+ * total exceeds the budget the least recently used results are evicted.
+ * Methods are synchronized.
+ *
+ * @param <Result> The result of one simulation
+ */
+public class SimulationCache<Result> {
+
+    private final long budget;
+    private final LinkedHashMap<PhenotypeKey, Entry<Result>> entries
+            = new LinkedHashMap<PhenotypeKey, Entry<Result>>(16, 0.75f, true);
+    private long memoryUsed = 0;
+    private long hits = 0;
+    private long misses = 0;
+    private long evictions = 0;
+
+    /**
+     * @param budget The most bytes of results to keep; 0 keeps none
+     */
+    public SimulationCache(long budget) {
+        this.budget = budget;
+    }
+
+    /**
+     * @param key The simulated network
+     * @return The result of its simulation, or <code>null</code> if none is
+     * cached
+     */
+    public synchronized Result get(PhenotypeKey key) {
+        Entry<Result> entry = entries.get(key);
+        if (entry == null) {
+            misses++;
+            return null;
+        }
+        hits++;
+        return entry.result;
+    }
+
+    /**
+     * Stores a result, evicting the least recently used results to stay
+     * within the budget.  A result larger than the whole budget is not stored.
+     *
+     * @param key The simulated network
+     * @param result The result of its simulation
+     * @param bytes An estimate of the bytes held by the key and result
+     */
+    public synchronized void put(PhenotypeKey key, Result result, long bytes) {
+        if (bytes > budget) {
+            return;
+        }
+        Entry<Result> old = entries.put(key, new Entry<Result>(result, bytes));
+        if (old != null) {
+            memoryUsed -= old.bytes;
+        }
+        memoryUsed += bytes;
+        Iterator<Entry<Result>> eldest = entries.values().iterator();
+        while (memoryUsed > budget) {
+            memoryUsed -= eldest.next().bytes;
+            eldest.remove();
+            evictions++;
+        }
+    }
+
+    /**
+     * Drops every result; the counts are kept.
+     */
+    public synchronized void clear() {
+        entries.clear();
+        memoryUsed = 0;
+    }
+
+    /**
+     * @return The number of results cached
+     */
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * @return The estimated bytes held by the cached results
+     */
+    public synchronized long getMemoryUsed() {
+        return memoryUsed;
+    }
+
+    public long getBudget() {
+        return budget;
+    }
+
+    /**
+     * @return The number of lookups that found a result
+     */
+    public synchronized long getHitCount() {
+        return hits;
+    }
+
+    /**
+     * @return The number of lookups that found none
+     */
+    public synchronized long getMissCount() {
+        return misses;
+    }
+
+    /**
+     * @return The number of results evicted to stay within the budget
+     */
+    public synchronized long getEvictionCount() {
+        return evictions;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "simulation cache: " + entries.size() + " results, " + memoryUsed + " of " + budget
+                + " bytes, " + hits + " hits, " + misses + " misses, " + evictions + " evictions";
+    }
+
+    private static final class Entry<Result> {
+
+        final Result result;
+        final long bytes;
+
+        Entry(Result result, long bytes) {
+            this.result = result;
+            this.bytes = bytes;
+        }
+    }
+}
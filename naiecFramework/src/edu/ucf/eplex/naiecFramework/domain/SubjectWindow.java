@@ -0,0 +1,117 @@
+/**
+ * This software is a work of the U.S. Government. It is not subject to copyright
+ * protection and is in the public domain. It may be used as-is or modified and
+ * re-used. The author and the Air Force Institute of Technology would appreciate
+ * credit if this software or parts of it are used or modified for re-use.
+ */
+package edu.ucf.eplex.naiecFramework.domain;
+
+import java.util.*;
+
+/**
+ * A sliding window of the most recently used subjects.  Touching a subject
+ * makes it the newest member in constant time, and trimming the window evicts
+ * the least recently used subjects, reporting each one to an
+ * {@link EvictionListener} so that dependent maps can drop exactly those
+ * entries.
+ *
+ * @param <T> The type of subject, e.g. a Candidate.
+ */
+public class SubjectWindow<T> {
+
+    /**
+     * Receives the subjects evicted from a {@link SubjectWindow}.
+     *
+     * @param <T> The type of subject
+     */
+    public interface EvictionListener<T> {
+
+        /**
+         * @param subject The least recently used subject, which is no longer
+         * in the window.
+         */
+        public void evicted(T subject);
+    }
+
+    private final int capacity;
+    private final EvictionListener<T> listener;
+    private final LinkedHashMap<T, Boolean> members = new LinkedHashMap<T, Boolean>(16, 0.75f, true);
+
+    /**
+     * @param capacity The maximum number of subjects kept after a trim
+     * @param listener Notified of each evicted subject; may be <code>null</code>
+     */
+    public SubjectWindow(int capacity, EvictionListener<T> listener) {
+        this.capacity = capacity;
+        this.listener = listener;
+    }
+
+    /**
+     * Adds a subject, or moves it to the newest end of the window.  The window
+     * is not trimmed, so a batch of subjects can be touched before any evictions.
+     *
+     * @param subject The subject to touch
+     */
+    public void touch(T subject) {
+        members.put(subject, Boolean.TRUE);
+    }
+
+    /**
+     * Touches each subject, in iteration order, and then trims the window.
+     *
+     * @param someSubjects The subjects to touch
+     * @return The number of subjects evicted
+     */
+    public int touchAll(Collection<? extends T> someSubjects) {
+        for (T subject : someSubjects) {
+            touch(subject);
+        }
+        return trim();
+    }
+
+    /**
+     * Evicts the least recently used subjects until the window is no larger
+     * than its capacity.
+     *
+     * @return The number of subjects evicted
+     */
+    public int trim() {
+        int evictions = 0;
+        Iterator<T> oldest = members.keySet().iterator();
+        while (members.size() > capacity) {
+            T subject = oldest.next();
+            oldest.remove();
+            evictions++;
+            if (listener != null) {
+                listener.evicted(subject);
+            }
+        }
+        return evictions;
+    }
+
+    public boolean contains(T subject) {
+        return members.containsKey(subject);
+    }
+
+    public int size() {
+        return members.size();
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * @return A read-only view of the subjects, oldest first.
+     */
+    public Set<T> getSubjects() {
+        return Collections.unmodifiableSet(members.keySet());
+    }
+
+    /**
+     * Removes every subject without notifying the listener.
+     */
+    public void clear() {
+        members.clear();
+    }
+}
@@ -0,0 +1,66 @@
+/**
+ * This software is a work of the U.S. Government. It is not subject to copyright
+ * protection and is in the public domain. It may be used as-is or modified and
+ * re-used. The author and the Air Force Institute of Technology would appreciate
+ * credit if this software or parts of it are used or modified for re-use.
+ */
+package edu.ucf.eplex.naiecFramework.novelty;
+
+import java.util.List;
+
+/**
+ * A spatial index over behavior vectors that supports incremental insertion and
+ * deletion, so the novelty metric can keep the index in step with its archive
+ * instead of rebuilding it on every call to score().
+ *
+ * @param <T> The type of item stored at each location, e.g. a Candidate.
+ */
+public interface BehaviorIndex<T> {
+
+    /**
+     * Adds an item at the given location.
+     *
+     * @param item The item to index
+     * @param location The behavior vector of the item
+     * @return <code>true</code> if the item was added; <code>false</code> if the
+     * item is already indexed, or if the implementation does not allow two items
+     * at the same location and another item is already indexed there.
+     * @throws IllegalArgumentException if the location has the wrong dimensionality
+     */
+    public boolean insert(T item, double[] location);
+
+    /**
+     * Removes an item from the index.
+     *
+     * @param item The item to remove
+     * @return <code>true</code> if the item was indexed; <code>false</code> otherwise.
+     */
+    public boolean delete(T item);
+
+    /**
+     * @param item The item to look for
+     * @return <code>true</code> if the item is indexed; <code>false</code> otherwise.
+     */
+    public boolean contains(T item);
+
+    /**
+     * Finds the k nearest items to a location.  Implementations must allow
+     * concurrent calls to this method as long as the index is not modified.
+     *
+     * @param location The query location
+     * @param k The number of neighbors to find
+     * @return Up to k items, in no particular order
+     * @throws IllegalArgumentException if the location has the wrong dimensionality
+     */
+    public List<T> nearest(double[] location, int k);
+
+    /**
+     * @return The number of items currently indexed.
+     */
+    public int size();
+
+    /**
+     * Removes every item from the index.
+     */
+    public void clear();
+}
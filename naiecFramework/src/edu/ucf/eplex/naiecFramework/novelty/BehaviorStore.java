@@ -0,0 +1,170 @@
+/**
+ * This software is a work of the U.S. Government. It is not subject to copyright
+ * protection and is in the public domain. It may be used as-is or modified and
+ * re-used. The author and the Air Force Institute of Technology would appreciate
+ * credit if this software or parts of it are used or modified for re-use.
+ */
+package edu.ucf.eplex.naiecFramework.novelty;
+
+import java.util.*;
+
+/**
+ * Stores one fixed-length behavior vector per item in a single flat
+ * <code>double[]</code>.  Each item is assigned a slot when it is added, and
+ * slots released by removed items are reused, so the store never holds more
+ * than its peak number of items and distances are computed without allocating.
+ *
+ * @param <T> The type of item that owns each vector, e.g. a Candidate.
+ */
+public class BehaviorStore<T> {
+
+    private final int dimensions;
+    private final Map<T, Integer> slots = new HashMap<T, Integer>();
+    private final Deque<Integer> freeSlots = new ArrayDeque<Integer>();
+    private double[] values;
+    private int capacity = 0;
+
+    /**
+     * @param dimensions The length of every stored vector
+     */
+    public BehaviorStore(int dimensions) {
+        assert (dimensions > 0);
+        this.dimensions = dimensions;
+        values = new double[dimensions * INITIAL_CAPACITY];
+    }
+
+    /**
+     * Stores a copy of the vector for the given item, replacing any vector
+     * already stored for it.
+     *
+     * @param item The owner of the vector
+     * @param vector The vector to store
+     * @throws IllegalArgumentException if the vector has the wrong length
+     */
+    public void put(T item, double[] vector) {
+        if (vector.length != dimensions) {
+            throw new IllegalArgumentException("Expected a vector with " + dimensions + " dimensions, found " + vector.length);
+        }
+        Integer slot = slots.get(item);
+        if (slot == null) {
+            slot = allocate();
+            slots.put(item, slot);
+        }
+        System.arraycopy(vector, 0, values, slot * dimensions, dimensions);
+    }
+
+    /**
+     * Releases the slot held by the given item.
+     *
+     * @param item The owner of the vector
+     * @return <code>true</code> if a vector was stored for the item
+     */
+    public boolean remove(T item) {
+        Integer slot = slots.remove(item);
+        if (slot == null) {
+            return false;
+        }
+        freeSlots.push(slot);
+        return true;
+    }
+
+    public boolean contains(T item) {
+        return slots.containsKey(item);
+    }
+
+    public int size() {
+        return slots.size();
+    }
+
+    public int getDimensions() {
+        return dimensions;
+    }
+
+    public void clear() {
+        slots.clear();
+        freeSlots.clear();
+        capacity = 0;
+    }
+
+    /**
+     * Copies the vector stored for an item into a caller supplied buffer.
+     *
+     * @param item The owner of the vector
+     * @param buffer The destination, at least {@link #getDimensions()} long
+     * @return The buffer, or <code>null</code> if no vector is stored for the item
+     */
+    public double[] copy(T item, double[] buffer) {
+        Integer slot = slots.get(item);
+        if (slot == null) {
+            return null;
+        }
+        System.arraycopy(values, slot * dimensions, buffer, 0, dimensions);
+        return buffer;
+    }
+
+    /**
+     * @param item The owner of the vector
+     * @return A new copy of the vector stored for the item, or <code>null</code>
+     */
+    public double[] get(T item) {
+        return copy(item, new double[dimensions]);
+    }
+
+    /**
+     * Computes the Euclidean distance between a location and the vector stored
+     * for an item.
+     *
+     * @param location The reference location
+     * @param item The owner of the other vector
+     * @return The distance, or <code>NaN</code> if no vector is stored for the item
+     */
+    public double distance(double[] location, T item) {
+        Integer slot = slots.get(item);
+        if (slot == null) {
+            return Double.NaN;
+        }
+        double dist = 0;
+        int offset = slot * dimensions;
+        for (int i = 0; i < dimensions; i++) {
+            double d = location[i] - values[offset + i];
+            dist += d * d;
+        }
+        return Math.sqrt(dist);
+    }
+
+    /**
+     * Finds the k stored vectors nearest to a location by comparing it with
+     * every stored vector.  This is exact but linear in the size of the store,
+     * so it serves as a reference for the approximate {@link BehaviorIndex}es.
+     *
+     * @param location The reference location
+     * @param k The number of neighbors to find
+     * @return Up to k items, nearest first
+     */
+    public List<T> nearest(final double[] location, int k) {
+        List<T> items = new ArrayList<T>(slots.keySet());
+        final Map<T, Double> dist = new HashMap<T, Double>();
+        for (T item : items) {
+            dist.put(item, distance(location, item));
+        }
+        Collections.sort(items, new Comparator<T>() {
+            @Override
+            public int compare(T a, T b) {
+                return Double.compare(dist.get(a), dist.get(b));
+            }
+        });
+        return items.subList(0, Math.min(Math.max(k, 0), items.size()));
+    }
+
+    private int allocate() {
+        if (!freeSlots.isEmpty()) {
+            return freeSlots.pop();
+        }
+        if ((capacity + 1) * dimensions > values.length) {
+            values = Arrays.copyOf(values, values.length * 2);
+        }
+        return capacity++;
+    }
+
+    private static final int INITIAL_CAPACITY = 256;
+}
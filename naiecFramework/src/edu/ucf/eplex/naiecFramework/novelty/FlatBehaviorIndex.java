@@ -0,0 +1,203 @@
+/**
+ * This software is a work of the U.S. Government. It is not subject to copyright
+ * protection and is in the public domain. It may be used as-is or modified and
+ * re-used. The author and the Air Force Institute of Technology would appreciate
+ * credit if this software or parts of it are used or modified for re-use.
+ */
+package edu.ucf.eplex.naiecFramework.novelty;
+
+import java.util.*;
+
+/**
+ * A brute force {@link BehaviorIndex} that keeps every location in one
+ * <code>double[]</code> column per dimension.  Items are kept densely packed;
+ * a deleted item is replaced by the last item, so a query is a single linear
+ * scan of each column followed by a bounded max-heap selection of the k
+ * nearest.  For a few thousand low dimensional points this is faster than
+ * walking a tree of nodes.
+ * <p>
+ * Items are keyed by their own equality; for a Candidate that is the
+ * chromosome id.  Two items may share a location.
+ *
+ * @param <T> The type of item stored at each location
+ */
+public class FlatBehaviorIndex<T> implements BehaviorIndex<T> {
+
+    private final int dimensions;
+    private final double[][] columns;
+    private final Map<T, Integer> slots = new HashMap<T, Integer>();
+    private Object[] items;
+    private int size = 0;
+
+    /**
+     * Per thread scratch space for the squared distances of a query.
+     */
+    private final ThreadLocal<double[]> scratch = new ThreadLocal<double[]>();
+
+    /**
+     * @param dimensions The dimensionality of the indexed locations
+     */
+    public FlatBehaviorIndex(int dimensions) {
+        assert (dimensions > 0);
+        this.dimensions = dimensions;
+        columns = new double[dimensions][INITIAL_CAPACITY];
+        items = new Object[INITIAL_CAPACITY];
+    }
+
+    @Override
+    public boolean insert(T item, double[] location) {
+        checkDimensions(location);
+        if (slots.containsKey(item)) {
+            return false;
+        }
+        if (size == items.length) {
+            grow();
+        }
+        for (int d = 0; d < dimensions; d++) {
+            columns[d][size] = location[d];
+        }
+        items[size] = item;
+        slots.put(item, size);
+        size++;
+        return true;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public boolean delete(T item) {
+        Integer slot = slots.remove(item);
+        if (slot == null) {
+            return false;
+        }
+        int last = --size;
+        if (slot != last) {
+            // Move the last item into the hole to keep the columns dense
+            for (int d = 0; d < dimensions; d++) {
+                columns[d][slot] = columns[d][last];
+            }
+            items[slot] = items[last];
+            slots.put((T) items[slot], slot);
+        }
+        items[last] = null;
+        return true;
+    }
+
+    @Override
+    public boolean contains(T item) {
+        return slots.containsKey(item);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public List<T> nearest(double[] location, int k) {
+        checkDimensions(location);
+        int n = size;
+        k = Math.min(k, n);
+        if (k <= 0) {
+            return new ArrayList<T>(0);
+        }
+
+        // Accumulate the squared distances one column at a time
+        double[] dist = getScratch(n);
+        double[] column = columns[0];
+        double q = location[0];
+        for (int i = 0; i < n; i++) {
+            double delta = column[i] - q;
+            dist[i] = delta * delta;
+        }
+        for (int d = 1; d < dimensions; d++) {
+            column = columns[d];
+            q = location[d];
+            for (int i = 0; i < n; i++) {
+                double delta = column[i] - q;
+                dist[i] += delta * delta;
+            }
+        }
+
+        // Keep the k nearest in a max-heap rooted at the farthest of them
+        int[] heap = new int[k];
+        int count = 0;
+        for (int i = 0; i < n; i++) {
+            if (count < k) {
+                heap[count] = i;
+                siftUp(heap, dist, count++);
+            } else if (dist[i] < dist[heap[0]]) {
+                heap[0] = i;
+                siftDown(heap, dist, count);
+            }
+        }
+
+        List<T> result = new ArrayList<T>(count);
+        for (int i = 0; i < count; i++) {
+            result.add((T) items[heap[i]]);
+        }
+        return result;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public void clear() {
+        Arrays.fill(items, 0, size, null);
+        slots.clear();
+        size = 0;
+    }
+
+    private void checkDimensions(double[] location) {
+        if (location.length != dimensions) {
+            throw new IllegalArgumentException("Expected a location with " + dimensions + " dimensions, found " + location.length);
+        }
+    }
+
+    private void grow() {
+        int capacity = items.length * 2;
+        for (int d = 0; d < dimensions; d++) {
+            columns[d] = Arrays.copyOf(columns[d], capacity);
+        }
+        items = Arrays.copyOf(items, capacity);
+    }
+
+    private double[] getScratch(int n) {
+        double[] dist = scratch.get();
+        if (dist == null || dist.length < n) {
+            dist = new double[Math.max(n, items.length)];
+            scratch.set(dist);
+        }
+        return dist;
+    }
+
+    private static void siftUp(int[] heap, double[] dist, int i) {
+        int item = heap[i];
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            if (dist[heap[parent]] >= dist[item]) {
+                break;
+            }
+            heap[i] = heap[parent];
+            i = parent;
+        }
+        heap[i] = item;
+    }
+
+    private static void siftDown(int[] heap, double[] dist, int count) {
+        int item = heap[0];
+        int i = 0;
+        int child;
+        while ((child = 2 * i + 1) < count) {
+            if (child + 1 < count && dist[heap[child + 1]] > dist[heap[child]]) {
+                child++;
+            }
+            if (dist[heap[child]] <= dist[item]) {
+                break;
+            }
+            heap[i] = heap[child];
+            i = child;
+        }
+        heap[i] = item;
+    }
+
+    private static final int INITIAL_CAPACITY = 256;
+}
@@ -0,0 +1,359 @@
+/**
+ * This software is a work of the U.S. Government. It is not subject to copyright
+ * protection and is in the public domain. It may be used as-is or modified and
+ * re-used. The author and the Air Force Institute of Technology would appreciate
+ * credit if this software or parts of it are used or modified for re-use.
+ */
+package edu.ucf.eplex.naiecFramework.novelty;
+
+import java.util.*;
+
+/**
+ * A {@link BehaviorIndex} for bounded, densely populated behavior spaces.  The
+ * first two or three dimensions of each location are bucketed into a uniform
+ * grid of square cells; any further dimensions (e.g. a heading or the
+ * candidate ID) only contribute to the distance.  Inserts and deletes touch a
+ * single cell, and a query visits rings of cells around the query cell until
+ * no unvisited cell can hold a nearer item.
+ * <p>
+ * Locations outside of the bounds are clamped into the border cells, which
+ * keeps queries exact because clamping never increases the distance between
+ * two locations.
+ *
+ * @param <T> The type of item stored at each location
+ */
+public class GridBehaviorIndex<T> implements BehaviorIndex<T> {
+
+    private final int dimensions;
+    private final int gridDimensions;
+    private final double[] origin;
+    private final double cellSize;
+    private final int[] cellCounts;
+    private final int[][] cells;
+    private final int[] cellSizes;
+    private final double[][] columns;
+    private final Map<T, Integer> slots = new HashMap<T, Integer>();
+    private Object[] items;
+    private int[] cellOf;
+    private int size = 0;
+
+    /**
+     * @param dimensions The dimensionality of the indexed locations
+     * @param lowerBounds The lower bound of each gridded dimension; its length
+     * (two or three) sets the number of gridded dimensions
+     * @param upperBounds The upper bound of each gridded dimension
+     * @param cellSize The edge length of each cell
+     */
+    public GridBehaviorIndex(int dimensions, double[] lowerBounds, double[] upperBounds, double cellSize) {
+        if (lowerBounds.length < 2 || lowerBounds.length > 3 || lowerBounds.length != upperBounds.length) {
+            throw new IllegalArgumentException("The grid must have two or three bounded dimensions");
+        }
+        if (dimensions < lowerBounds.length) {
+            throw new IllegalArgumentException("The grid has more dimensions than the locations");
+        }
+        if (!(cellSize > 0)) {
+            throw new IllegalArgumentException("The cell size must be positive");
+        }
+        this.dimensions = dimensions;
+        this.gridDimensions = lowerBounds.length;
+        this.origin = lowerBounds.clone();
+        this.cellSize = cellSize;
+
+        cellCounts = new int[gridDimensions];
+        int totalCells = 1;
+        for (int d = 0; d < gridDimensions; d++) {
+            cellCounts[d] = Math.max(1, (int) Math.ceil((upperBounds[d] - lowerBounds[d]) / cellSize));
+            totalCells *= cellCounts[d];
+        }
+        cells = new int[totalCells][];
+        cellSizes = new int[totalCells];
+
+        columns = new double[dimensions][INITIAL_CAPACITY];
+        items = new Object[INITIAL_CAPACITY];
+        cellOf = new int[INITIAL_CAPACITY];
+    }
+
+    @Override
+    public boolean insert(T item, double[] location) {
+        checkDimensions(location);
+        if (slots.containsKey(item)) {
+            return false;
+        }
+        if (size == items.length) {
+            grow();
+        }
+        int slot = size++;
+        for (int d = 0; d < dimensions; d++) {
+            columns[d][slot] = location[d];
+        }
+        items[slot] = item;
+        slots.put(item, slot);
+
+        int cell = cellIndex(location);
+        cellOf[slot] = cell;
+        addToCell(cell, slot);
+        return true;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public boolean delete(T item) {
+        Integer slot = slots.remove(item);
+        if (slot == null) {
+            return false;
+        }
+        removeFromCell(cellOf[slot], slot);
+
+        int last = --size;
+        if (slot != last) {
+            // Move the last item into the hole to keep the columns dense
+            for (int d = 0; d < dimensions; d++) {
+                columns[d][slot] = columns[d][last];
+            }
+            items[slot] = items[last];
+            cellOf[slot] = cellOf[last];
+            replaceInCell(cellOf[slot], last, slot);
+            slots.put((T) items[slot], slot);
+        }
+        items[last] = null;
+        return true;
+    }
+
+    @Override
+    public boolean contains(T item) {
+        return slots.containsKey(item);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public List<T> nearest(double[] location, int k) {
+        checkDimensions(location);
+        k = Math.min(k, size);
+        if (k <= 0) {
+            return new ArrayList<T>(0);
+        }
+
+        int[] center = new int[gridDimensions];
+        int maxRing = 0;
+        for (int d = 0; d < gridDimensions; d++) {
+            center[d] = cellCoordinate(location[d], d);
+            maxRing = Math.max(maxRing, Math.max(center[d], cellCounts[d] - 1 - center[d]));
+        }
+
+        int[] heap = new int[k];
+        double[] heapDist = new double[k];
+        int count = 0;
+        int[] offset = new int[gridDimensions];
+
+        for (int ring = 0; ring <= maxRing; ring++) {
+            // Visit every cell whose largest offset from the center is the ring
+            Arrays.fill(offset, -ring);
+            boolean more = true;
+            while (more) {
+                if (onRing(offset, ring)) {
+                    int cell = offsetCell(center, offset);
+                    if (cell >= 0) {
+                        int[] members = cells[cell];
+                        for (int m = 0, n = cellSizes[cell]; m < n; m++) {
+                            int slot = members[m];
+                            double dist = squaredDistance(location, slot);
+                            if (count < k) {
+                                heap[count] = slot;
+                                heapDist[count] = dist;
+                                siftUp(heap, heapDist, count++);
+                            } else if (dist < heapDist[0]) {
+                                heap[0] = slot;
+                                heapDist[0] = dist;
+                                siftDown(heap, heapDist, count);
+                            }
+                        }
+                    }
+                }
+                more = nextOffset(offset, ring);
+            }
+
+            // Every unvisited item is at least ring * cellSize away
+            double bound = ring * cellSize;
+            if (count == k && heapDist[0] <= bound * bound) {
+                break;
+            }
+        }
+
+        List<T> result = new ArrayList<T>(count);
+        for (int i = 0; i < count; i++) {
+            result.add((T) items[heap[i]]);
+        }
+        return result;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public void clear() {
+        Arrays.fill(items, 0, size, null);
+        Arrays.fill(cellSizes, 0);
+        slots.clear();
+        size = 0;
+    }
+
+    /**
+     * @return The edge length of each cell.
+     */
+    public double getCellSize() {
+        return cellSize;
+    }
+
+    private void checkDimensions(double[] location) {
+        if (location.length != dimensions) {
+            throw new IllegalArgumentException("Expected a location with " + dimensions + " dimensions, found " + location.length);
+        }
+    }
+
+    private int cellCoordinate(double value, int d) {
+        int c = (int) Math.floor((value - origin[d]) / cellSize);
+        return Math.min(Math.max(c, 0), cellCounts[d] - 1);
+    }
+
+    private int cellIndex(double[] location) {
+        int cell = 0;
+        for (int d = gridDimensions - 1; d >= 0; d--) {
+            cell = cell * cellCounts[d] + cellCoordinate(location[d], d);
+        }
+        return cell;
+    }
+
+    /**
+     * @return The index of the cell at the given offset from the center, or
+     * -1 if that cell is outside of the grid.
+     */
+    private int offsetCell(int[] center, int[] offset) {
+        int cell = 0;
+        for (int d = gridDimensions - 1; d >= 0; d--) {
+            int c = center[d] + offset[d];
+            if (c < 0 || c >= cellCounts[d]) {
+                return -1;
+            }
+            cell = cell * cellCounts[d] + c;
+        }
+        return cell;
+    }
+
+    private static boolean onRing(int[] offset, int ring) {
+        for (int o : offset) {
+            if (o == ring || o == -ring) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Advances an offset through the cube [-ring, ring] in each dimension.
+     *
+     * @return <code>false</code> once every offset has been visited
+     */
+    private static boolean nextOffset(int[] offset, int ring) {
+        for (int d = 0; d < offset.length; d++) {
+            if (offset[d] < ring) {
+                offset[d]++;
+                return true;
+            }
+            offset[d] = -ring;
+        }
+        return false;
+    }
+
+    private double squaredDistance(double[] location, int slot) {
+        double dist = 0;
+        for (int d = 0; d < dimensions; d++) {
+            double delta = columns[d][slot] - location[d];
+            dist += delta * delta;
+        }
+        return dist;
+    }
+
+    private void addToCell(int cell, int slot) {
+        int[] members = cells[cell];
+        int n = cellSizes[cell];
+        if (members == null) {
+            members = cells[cell] = new int[INITIAL_CELL_CAPACITY];
+        } else if (n == members.length) {
+            members = cells[cell] = Arrays.copyOf(members, n * 2);
+        }
+        members[n] = slot;
+        cellSizes[cell] = n + 1;
+    }
+
+    private void removeFromCell(int cell, int slot) {
+        int[] members = cells[cell];
+        int n = cellSizes[cell] - 1;
+        for (int m = 0; m <= n; m++) {
+            if (members[m] == slot) {
+                members[m] = members[n];
+                cellSizes[cell] = n;
+                return;
+            }
+        }
+    }
+
+    private void replaceInCell(int cell, int oldSlot, int newSlot) {
+        int[] members = cells[cell];
+        for (int m = 0, n = cellSizes[cell]; m < n; m++) {
+            if (members[m] == oldSlot) {
+                members[m] = newSlot;
+                return;
+            }
+        }
+    }
+
+    private void grow() {
+        int capacity = items.length * 2;
+        for (int d = 0; d < dimensions; d++) {
+            columns[d] = Arrays.copyOf(columns[d], capacity);
+        }
+        items = Arrays.copyOf(items, capacity);
+        cellOf = Arrays.copyOf(cellOf, capacity);
+    }
+
+    private static void siftUp(int[] heap, double[] dist, int i) {
+        int item = heap[i];
+        double itemDist = dist[i];
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            if (dist[parent] >= itemDist) {
+                break;
+            }
+            heap[i] = heap[parent];
+            dist[i] = dist[parent];
+            i = parent;
+        }
+        heap[i] = item;
+        dist[i] = itemDist;
+    }
+
+    private static void siftDown(int[] heap, double[] dist, int count) {
+        int item = heap[0];
+        double itemDist = dist[0];
+        int i = 0;
+        int child;
+        while ((child = 2 * i + 1) < count) {
+            if (child + 1 < count && dist[child + 1] > dist[child]) {
+                child++;
+            }
+            if (dist[child] <= itemDist) {
+                break;
+            }
+            heap[i] = heap[child];
+            dist[i] = dist[child];
+            i = child;
+        }
+        heap[i] = item;
+        dist[i] = itemDist;
+    }
+
+    private static final int INITIAL_CAPACITY = 256;
+    private static final int INITIAL_CELL_CAPACITY = 8;
+}
@@ -0,0 +1,169 @@
+/**
+ * This software is a work of the U.S. Government. It is not subject to copyright
+ * protection and is in the public domain. It may be used as-is or modified and
+ * re-used. The author and the Air Force Institute of Technology would appreciate
+ * credit if this software or parts of it are used or modified for re-use.
+ */
+package edu.ucf.eplex.naiecFramework.novelty;
+
+import edu.wlu.cs.levy.CG.KDTree;
+import edu.wlu.cs.levy.CG.KeyDuplicateException;
+import edu.wlu.cs.levy.CG.KeyMissingException;
+import edu.wlu.cs.levy.CG.KeySizeException;
+
+import java.util.*;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * A {@link BehaviorIndex} backed by a {@link KDTree}.  Inserts and deletes are
+ * applied to the tree in place; deletes only mark the tree node, so the tree
+ * is periodically rebuilt, balanced on the median of each dimension, once the
+ * number of modifications since the last rebuild exceeds
+ * <code>rebalanceRatio</code> times the number of indexed items.
+ *
+ * @param <T> The type of item stored at each location
+ */
+public class KDTreeBehaviorIndex<T> implements BehaviorIndex<T> {
+
+    private final int dimensions;
+    private final double rebalanceRatio;
+    private final Map<T, double[]> locations = new HashMap<T, double[]>();
+    private KDTree<T> tree;
+    private int modifications = 0;
+    private int rebuilds = 0;
+    private long rebuildNanos = 0;
+
+    /**
+     * @param dimensions The dimensionality of the indexed locations
+     * @param rebalanceRatio The fraction of modifications, relative to the index
+     * size, that triggers a rebuild.  A value of zero or less disables rebuilding.
+     */
+    public KDTreeBehaviorIndex(int dimensions, double rebalanceRatio) {
+        assert (dimensions > 0);
+        this.dimensions = dimensions;
+        this.rebalanceRatio = rebalanceRatio;
+        tree = new KDTree<T>(dimensions);
+    }
+
+    @Override
+    public boolean insert(T item, double[] location) {
+        if (locations.containsKey(item)) {
+            return false;
+        }
+        try {
+            tree.insert(location, item);
+        } catch (KeySizeException ex) {
+            throw new IllegalArgumentException("Expected a location with " + dimensions + " dimensions", ex);
+        } catch (KeyDuplicateException ex) {
+            return false;
+        }
+        locations.put(item, location);
+        modified();
+        return true;
+    }
+
+    @Override
+    public boolean delete(T item) {
+        double[] location = locations.remove(item);
+        if (location == null) {
+            return false;
+        }
+        try {
+            tree.delete(location);
+        } catch (KeySizeException ex) {
+            Logger.getLogger(KDTreeBehaviorIndex.class.getName()).log(Level.SEVERE, null, ex);
+        } catch (KeyMissingException ex) {
+            Logger.getLogger(KDTreeBehaviorIndex.class.getName()).log(Level.SEVERE, null, ex);
+        }
+        modified();
+        return true;
+    }
+
+    @Override
+    public boolean contains(T item) {
+        return locations.containsKey(item);
+    }
+
+    @Override
+    public List<T> nearest(double[] location, int k) {
+        try {
+            return tree.nearest(location, k);
+        } catch (KeySizeException ex) {
+            throw new IllegalArgumentException("Expected a location with " + dimensions + " dimensions", ex);
+        }
+    }
+
+    @Override
+    public int size() {
+        return locations.size();
+    }
+
+    @Override
+    public void clear() {
+        locations.clear();
+        tree = new KDTree<T>(dimensions);
+        modifications = 0;
+    }
+
+    /**
+     * @return The number of times the tree has been rebuilt.
+     */
+    public int getRebuildCount() {
+        return rebuilds;
+    }
+
+    /**
+     * @return The total time spent rebuilding the tree, in nanoseconds.
+     */
+    public long getRebuildTime() {
+        return rebuildNanos;
+    }
+
+    private void modified() {
+        modifications++;
+        if (rebalanceRatio > 0 && modifications > rebalanceRatio * Math.max(locations.size(), MIN_REBALANCE_SIZE)) {
+            rebuild();
+        }
+    }
+
+    /**
+     * Replaces the tree with a balanced tree of the live items.  Inserting the
+     * median of each partition before its halves yields a balanced tree without
+     * any access to the tree's internals.
+     */
+    private void rebuild() {
+        long start = System.nanoTime();
+        List<T> items = new ArrayList<T>(locations.keySet());
+        tree = new KDTree<T>(dimensions);
+        try {
+            insertBalanced(items, 0, items.size(), 0);
+        } catch (KeySizeException ex) {
+            Logger.getLogger(KDTreeBehaviorIndex.class.getName()).log(Level.SEVERE, null, ex);
+        } catch (KeyDuplicateException ex) {
+            Logger.getLogger(KDTreeBehaviorIndex.class.getName()).log(Level.SEVERE, null, ex);
+        }
+        modifications = 0;
+        rebuilds++;
+        rebuildNanos += System.nanoTime() - start;
+    }
+
+    private void insertBalanced(List<T> items, int from, int to, final int axis) throws KeySizeException, KeyDuplicateException {
+        if (from >= to) {
+            return;
+        }
+        Collections.sort(items.subList(from, to), new Comparator<T>() {
+            @Override
+            public int compare(T a, T b) {
+                return Double.compare(locations.get(a)[axis], locations.get(b)[axis]);
+            }
+        });
+        int median = (from + to) >>> 1;
+        T item = items.get(median);
+        tree.insert(locations.get(item), item);
+        insertBalanced(items, from, median, (axis + 1) % dimensions);
+        insertBalanced(items, median + 1, to, (axis + 1) % dimensions);
+    }
+
+    private static final int MIN_REBALANCE_SIZE = 64;
+}
@@ -0,0 +1,331 @@
+/**
+ * This software is a work of the U.S. Government. It is not subject to copyright
+ * protection and is in the public domain. It may be used as-is or modified and
+ * re-used. The author and the Air Force Institute of Technology would appreciate
+ * credit if this software or parts of it are used or modified for re-use.
+ */
+package edu.ucf.eplex.naiecFramework.novelty;
+
+import java.util.*;
+
+/**
+ * An approximate {@link BehaviorIndex} for high dimensional behavior spaces,
+ * based on locality sensitive hashing with p-stable (Gaussian) projections.
+ * Each of <code>tables</code> hash tables buckets a location by
+ * <code>hashes</code> quantized random projections of width
+ * <code>bucketWidth</code>.  A query gathers the items that share a bucket
+ * with the query location in any table and returns the k nearest of them.
+ * <p>
+ * More tables raise recall at the cost of memory and query time; more hashes
+ * per table, or a narrower bucket, make buckets more selective and queries
+ * faster at the cost of recall.  When fewer than k items share a bucket with
+ * the query, the query falls back to an exact scan, so a query always
+ * returns min(k, size) items.  Inserts and deletes cost O(tables * hashes *
+ * dimensions).
+ *
+ * @param <T> The type of item stored at each location
+ */
+public class LshBehaviorIndex<T> implements BehaviorIndex<T> {
+
+    private final int dimensions;
+    private final int tables;
+    private final int hashes;
+    private final double bucketWidth;
+    private final double[][][] projections;
+    private final double[][] offsets;
+    private final List<Map<Long, Bucket>> buckets;
+    private final Map<T, Integer> slots = new HashMap<T, Integer>();
+    private double[] values;
+    private long[] keys;
+    private Object[] items;
+    private int size = 0;
+
+    /**
+     * @param dimensions The dimensionality of the indexed locations
+     * @param tables The number of hash tables
+     * @param hashes The number of projections combined into each table's key
+     * @param bucketWidth The quantization width of each projection
+     * @param seed Seeds the random projections
+     */
+    public LshBehaviorIndex(int dimensions, int tables, int hashes, double bucketWidth, long seed) {
+        if (dimensions < 1 || tables < 1 || hashes < 1 || !(bucketWidth > 0)) {
+            throw new IllegalArgumentException("LSH dimensions, tables, hashes and bucket width must be positive");
+        }
+        this.dimensions = dimensions;
+        this.tables = tables;
+        this.hashes = hashes;
+        this.bucketWidth = bucketWidth;
+
+        Random rand = new Random(seed);
+        projections = new double[tables][hashes][dimensions];
+        offsets = new double[tables][hashes];
+        buckets = new ArrayList<Map<Long, Bucket>>(tables);
+        for (int t = 0; t < tables; t++) {
+            for (int h = 0; h < hashes; h++) {
+                for (int d = 0; d < dimensions; d++) {
+                    projections[t][h][d] = rand.nextGaussian();
+                }
+                offsets[t][h] = rand.nextDouble() * bucketWidth;
+            }
+            buckets.add(new HashMap<Long, Bucket>());
+        }
+
+        values = new double[INITIAL_CAPACITY * dimensions];
+        keys = new long[INITIAL_CAPACITY * tables];
+        items = new Object[INITIAL_CAPACITY];
+    }
+
+    @Override
+    public boolean insert(T item, double[] location) {
+        checkDimensions(location);
+        if (slots.containsKey(item)) {
+            return false;
+        }
+        if (size == items.length) {
+            grow();
+        }
+        int slot = size++;
+        System.arraycopy(location, 0, values, slot * dimensions, dimensions);
+        items[slot] = item;
+        slots.put(item, slot);
+
+        for (int t = 0; t < tables; t++) {
+            long key = hash(location, t);
+            keys[slot * tables + t] = key;
+            Bucket bucket = buckets.get(t).get(key);
+            if (bucket == null) {
+                bucket = new Bucket();
+                buckets.get(t).put(key, bucket);
+            }
+            bucket.add(slot);
+        }
+        return true;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public boolean delete(T item) {
+        Integer slot = slots.remove(item);
+        if (slot == null) {
+            return false;
+        }
+        for (int t = 0; t < tables; t++) {
+            Long key = keys[slot * tables + t];
+            Bucket bucket = buckets.get(t).get(key);
+            bucket.remove(slot);
+            if (bucket.size == 0) {
+                buckets.get(t).remove(key);
+            }
+        }
+
+        int last = --size;
+        if (slot != last) {
+            // Move the last item into the hole to keep the arrays dense
+            System.arraycopy(values, last * dimensions, values, slot * dimensions, dimensions);
+            System.arraycopy(keys, last * tables, keys, slot * tables, tables);
+            items[slot] = items[last];
+            for (int t = 0; t < tables; t++) {
+                buckets.get(t).get(keys[slot * tables + t]).replace(last, slot);
+            }
+            slots.put((T) items[slot], slot);
+        }
+        items[last] = null;
+        return true;
+    }
+
+    @Override
+    public boolean contains(T item) {
+        return slots.containsKey(item);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public List<T> nearest(double[] location, int k) {
+        checkDimensions(location);
+        int n = size;
+        k = Math.min(k, n);
+        if (k <= 0) {
+            return new ArrayList<T>(0);
+        }
+
+        // Gather the distinct items that share a bucket with the query
+        BitSet seen = new BitSet(n);
+        int[] candidates = new int[Math.min(n, INITIAL_CAPACITY)];
+        int count = 0;
+        for (int t = 0; t < tables; t++) {
+            Bucket bucket = buckets.get(t).get(hash(location, t));
+            if (bucket == null) {
+                continue;
+            }
+            for (int m = 0; m < bucket.size; m++) {
+                int slot = bucket.slots[m];
+                if (!seen.get(slot)) {
+                    seen.set(slot);
+                    if (count == candidates.length) {
+                        candidates = Arrays.copyOf(candidates, Math.min(n, count * 2));
+                    }
+                    candidates[count++] = slot;
+                }
+            }
+        }
+
+        if (count < k) {
+            // Too few collisions to answer the query, so scan everything
+            candidates = new int[n];
+            for (int i = 0; i < n; i++) {
+                candidates[i] = i;
+            }
+            count = n;
+        }
+
+        // Keep the k nearest candidates in a max-heap rooted at the farthest
+        int[] heap = new int[k];
+        double[] heapDist = new double[k];
+        int filled = 0;
+        for (int c = 0; c < count; c++) {
+            int slot = candidates[c];
+            double dist = squaredDistance(location, slot);
+            if (filled < k) {
+                heap[filled] = slot;
+                heapDist[filled] = dist;
+                siftUp(heap, heapDist, filled++);
+            } else if (dist < heapDist[0]) {
+                heap[0] = slot;
+                heapDist[0] = dist;
+                siftDown(heap, heapDist, filled);
+            }
+        }
+
+        List<T> result = new ArrayList<T>(filled);
+        for (int i = 0; i < filled; i++) {
+            result.add((T) items[heap[i]]);
+        }
+        return result;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public void clear() {
+        Arrays.fill(items, 0, size, null);
+        for (Map<Long, Bucket> table : buckets) {
+            table.clear();
+        }
+        slots.clear();
+        size = 0;
+    }
+
+    private void checkDimensions(double[] location) {
+        if (location.length != dimensions) {
+            throw new IllegalArgumentException("Expected a location with " + dimensions + " dimensions, found " + location.length);
+        }
+    }
+
+    /**
+     * Combines the quantized projections of a location for one table into a key.
+     */
+    private long hash(double[] location, int table) {
+        long key = 17;
+        for (int h = 0; h < hashes; h++) {
+            double[] a = projections[table][h];
+            double dot = offsets[table][h];
+            for (int d = 0; d < dimensions; d++) {
+                dot += a[d] * location[d];
+            }
+            key = 31 * key + (long) Math.floor(dot / bucketWidth);
+        }
+        return key;
+    }
+
+    private double squaredDistance(double[] location, int slot) {
+        double dist = 0;
+        int offset = slot * dimensions;
+        for (int d = 0; d < dimensions; d++) {
+            double delta = values[offset + d] - location[d];
+            dist += delta * delta;
+        }
+        return dist;
+    }
+
+    private void grow() {
+        int capacity = items.length * 2;
+        values = Arrays.copyOf(values, capacity * dimensions);
+        keys = Arrays.copyOf(keys, capacity * tables);
+        items = Arrays.copyOf(items, capacity);
+    }
+
+    private static void siftUp(int[] heap, double[] dist, int i) {
+        int item = heap[i];
+        double itemDist = dist[i];
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            if (dist[parent] >= itemDist) {
+                break;
+            }
+            heap[i] = heap[parent];
+            dist[i] = dist[parent];
+            i = parent;
+        }
+        heap[i] = item;
+        dist[i] = itemDist;
+    }
+
+    private static void siftDown(int[] heap, double[] dist, int count) {
+        int item = heap[0];
+        double itemDist = dist[0];
+        int i = 0;
+        int child;
+        while ((child = 2 * i + 1) < count) {
+            if (child + 1 < count && dist[child + 1] > dist[child]) {
+                child++;
+            }
+            if (dist[child] <= itemDist) {
+                break;
+            }
+            heap[i] = heap[child];
+            dist[i] = dist[child];
+            i = child;
+        }
+        heap[i] = item;
+        dist[i] = itemDist;
+    }
+
+    /**
+     * The slots that share one hash key in one table.
+     */
+    private static class Bucket {
+
+        private int[] slots = new int[4];
+        private int size = 0;
+
+        void add(int slot) {
+            if (size == slots.length) {
+                slots = Arrays.copyOf(slots, size * 2);
+            }
+            slots[size++] = slot;
+        }
+
+        void remove(int slot) {
+            for (int m = 0; m < size; m++) {
+                if (slots[m] == slot) {
+                    slots[m] = slots[--size];
+                    return;
+                }
+            }
+        }
+
+        void replace(int oldSlot, int newSlot) {
+            for (int m = 0; m < size; m++) {
+                if (slots[m] == oldSlot) {
+                    slots[m] = newSlot;
+                    return;
+                }
+            }
+        }
+    }
+
+    private static final int INITIAL_CAPACITY = 256;
+}
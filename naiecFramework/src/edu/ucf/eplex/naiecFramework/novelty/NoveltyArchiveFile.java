@@ -0,0 +1,254 @@
+/**
+ * This software is a work of the U.S. Government. It is not subject to copyright
+ * protection and is in the public domain. It may be used as-is or modified and
+ * re-used. The author and the Air Force Institute of Technology would appreciate
+ * credit if this software or parts of it are used or modified for re-use.
+ */
+package edu.ucf.eplex.naiecFramework.novelty;
+
+import java.io.*;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * A compact binary snapshot of a novelty archive: the novelty threshold and,
+ * in admission order (oldest first), the chromosome ID, archive membership and
+ * behavior vector of each subject.  Every record has the same length, so an
+ * opened file is memory-mapped and read in place; a large archive can be
+ * scanned, or just its newest records loaded, without reading it onto the heap.
+ * <p>
+ * Layout (big-endian): a header of magic, version, dimensions and record count
+ * (ints), the threshold (double), and the evaluation and new archive member
+ * counters of the threshold adjustment (ints); then one record per subject of
+ * ID (long), flags (byte) and the vector (doubles).
+ * <p>
+ * An opened file should be {@link #close() closed} once its records have been
+ * read: some platforms will not replace a file while it is mapped, so an
+ * archive that is still open cannot be saved over.
+ */
+public class NoveltyArchiveFile {
+
+    private final MappedByteBuffer buffer;
+    private final int dimensions;
+    private final int count;
+    private final double threshold;
+    private final int evaluations;
+    private final int newArchiveMembers;
+    private boolean closed = false;
+
+    private NoveltyArchiveFile(MappedByteBuffer buffer) throws IOException {
+        this.buffer = buffer;
+        if (buffer.capacity() < HEADER_SIZE || buffer.getInt(0) != MAGIC) {
+            throw new IOException("Not a novelty archive file");
+        }
+        if (buffer.getInt(4) != VERSION) {
+            throw new IOException("Unsupported novelty archive version " + buffer.getInt(4));
+        }
+        dimensions = buffer.getInt(8);
+        count = buffer.getInt(12);
+        threshold = buffer.getDouble(16);
+        evaluations = buffer.getInt(24);
+        newArchiveMembers = buffer.getInt(28);
+        if (dimensions < 1 || count < 0 || buffer.capacity() < HEADER_SIZE + (long) count * getRecordSize()) {
+            throw new IOException("Truncated novelty archive file");
+        }
+    }
+
+    /**
+     * Memory-maps an archive file for reading.
+     *
+     * @param file The archive file
+     * @return The mapped archive
+     * @throws IOException if the file cannot be read or is not an archive
+     */
+    public static NoveltyArchiveFile open(File file) throws IOException {
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try {
+            FileChannel channel = raf.getChannel();
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            buffer.order(ByteOrder.BIG_ENDIAN);
+            return new NoveltyArchiveFile(buffer);
+        } finally {
+            // The mapping stays valid after the channel is closed
+            raf.close();
+        }
+    }
+
+    /**
+     * Releases the mapping of the file.  The records cannot be read afterwards.
+     * The JVM only unmaps a buffer when it is collected, so the mapping is
+     * released through the platform's buffer cleaner where there is one.
+     */
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            // Java 9 and later
+            Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+            Field theUnsafe = unsafeClass.getDeclaredField("theUnsafe");
+            theUnsafe.setAccessible(true);
+            unsafeClass.getMethod("invokeCleaner", ByteBuffer.class).invoke(theUnsafe.get(null), buffer);
+        } catch (NoSuchMethodException ex) {
+            try {
+                // Java 8 and earlier
+                Method cleaner = buffer.getClass().getMethod("cleaner");
+                cleaner.setAccessible(true);
+                Object clean = cleaner.invoke(buffer);
+                clean.getClass().getMethod("clean").invoke(clean);
+            } catch (Exception ex2) {
+                Logger.getLogger(NoveltyArchiveFile.class.getName()).log(Level.WARNING,
+                        "Could not release the archive mapping; it is released when collected", ex2);
+            }
+        } catch (Exception ex) {
+            Logger.getLogger(NoveltyArchiveFile.class.getName()).log(Level.WARNING,
+                    "Could not release the archive mapping; it is released when collected", ex);
+        }
+    }
+
+    /**
+     * Writes an archive file.  The file is written beside the destination and
+     * then renamed over it, so an interrupted write never leaves a partial archive.
+     *
+     * @param file The destination
+     * @param dimensions The length of each vector
+     * @param threshold The novelty threshold
+     * @param evaluations The evaluations since the threshold was last adjusted
+     * @param newArchiveMembers The admissions since the threshold was last adjusted
+     * @param ids The chromosome ID of each subject, oldest first
+     * @param archived Whether each subject is in the archive, rather than only evaluated
+     * @param vectors The vectors of the subjects, concatenated in the same order
+     * @throws IOException if the file cannot be written
+     */
+    public static void write(File file, int dimensions, double threshold, int evaluations, int newArchiveMembers,
+            long[] ids, boolean[] archived, double[] vectors) throws IOException {
+        if (ids.length != archived.length || vectors.length != ids.length * dimensions) {
+            throw new IllegalArgumentException("Expected " + ids.length + " records of " + dimensions + " dimensions");
+        }
+        File temp = new File(file.getPath() + ".tmp");
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)));
+        try {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(dimensions);
+            out.writeInt(ids.length);
+            out.writeDouble(threshold);
+            out.writeInt(evaluations);
+            out.writeInt(newArchiveMembers);
+            for (int i = 0; i < ids.length; i++) {
+                out.writeLong(ids[i]);
+                out.writeByte(archived[i] ? ARCHIVED_FLAG : 0);
+                for (int d = 0; d < dimensions; d++) {
+                    out.writeDouble(vectors[i * dimensions + d]);
+                }
+            }
+        } finally {
+            out.close();
+        }
+        if (!temp.renameTo(file)) {
+            // Some platforms will not rename over an existing file
+            if (!file.delete() || !temp.renameTo(file)) {
+                throw new IOException("Could not replace " + file);
+            }
+        }
+    }
+
+    /**
+     * @return The number of subjects in the archive file.
+     */
+    public int size() {
+        return count;
+    }
+
+    public int getDimensions() {
+        return dimensions;
+    }
+
+    public double getThreshold() {
+        return threshold;
+    }
+
+    public int getEvaluations() {
+        return evaluations;
+    }
+
+    public int getNewArchiveMembers() {
+        return newArchiveMembers;
+    }
+
+    /**
+     * @param index The admission order of a subject, zero for the oldest
+     * @return The subject's chromosome ID
+     */
+    public long getId(int index) {
+        return buffer.getLong(recordOffset(index));
+    }
+
+    /**
+     * @param index The admission order of a subject
+     * @return <code>true</code> if the subject is in the archive, or
+     * <code>false</code> if it was only evaluated
+     */
+    public boolean isArchived(int index) {
+        return (buffer.get(recordOffset(index) + 8) & ARCHIVED_FLAG) != 0;
+    }
+
+    /**
+     * Copies a subject's vector into a caller supplied buffer.
+     *
+     * @param index The admission order of a subject
+     * @param vector The destination, at least {@link #getDimensions()} long
+     * @return The destination
+     */
+    public double[] copy(int index, double[] vector) {
+        int offset = recordOffset(index) + 9;
+        for (int d = 0; d < dimensions; d++) {
+            vector[d] = buffer.getDouble(offset + 8 * d);
+        }
+        return vector;
+    }
+
+    /**
+     * Computes the Euclidean distance between a location and a subject's
+     * vector, reading the vector in place.
+     *
+     * @param index The admission order of a subject
+     * @param location The reference location
+     * @return The distance
+     */
+    public double distance(int index, double[] location) {
+        int offset = recordOffset(index) + 9;
+        double dist = 0;
+        for (int d = 0; d < dimensions; d++) {
+            double delta = location[d] - buffer.getDouble(offset + 8 * d);
+            dist += delta * delta;
+        }
+        return Math.sqrt(dist);
+    }
+
+    private int getRecordSize() {
+        return 9 + 8 * dimensions;
+    }
+
+    private int recordOffset(int index) {
+        if (closed) {
+            throw new IllegalStateException("The archive file is closed");
+        }
+        if (index < 0 || index >= count) {
+            throw new IndexOutOfBoundsException("Record " + index + " of " + count);
+        }
+        return HEADER_SIZE + index * getRecordSize();
+    }
+
+    private static final int MAGIC = 0x4E564152;
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 32;
+    private static final byte ARCHIVED_FLAG = 1;
+}